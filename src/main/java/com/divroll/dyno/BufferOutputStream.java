@@ -0,0 +1,115 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import com.google.common.io.ByteSource;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@linkplain OutputStream} that writes into a pooled {@linkplain ByteBuffer},
+ * growing into larger pooled buffers as needed.
+ * Closing the stream releases the buffer back into the pool.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class BufferOutputStream extends OutputStream {
+
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+
+    BufferOutputStream(BufferPool pool, int initialCapacity) {
+        this.pool = pool;
+        this.buffer = pool.acquire(initialCapacity);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        buffer.put(b, off, len);
+    }
+
+    /**
+     * Get the number of bytes written
+     *
+     * @return the size
+     */
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Get a read-only view of the bytes written
+     *
+     * @return the buffer, positioned at the first byte written
+     */
+    ByteBuffer toByteBuffer() {
+        ByteBuffer view = buffer.duplicate();
+        view.flip();
+        return view.asReadOnlyBuffer();
+    }
+
+    /**
+     * Get the bytes written as a source that can be read more than once, without copying
+     *
+     * @return the byte source
+     */
+    ByteSource toByteSource() {
+        return ByteSource.wrap(buffer.array()).slice(buffer.arrayOffset(), buffer.position());
+    }
+
+    /**
+     * Get the backing array, only the first {@linkplain #size()} bytes are written
+     *
+     * @return the backing array
+     */
+    byte[] array() {
+        return buffer.array();
+    }
+
+    @Override
+    public void close() {
+        if(buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private void ensureCapacity(int length) {
+        if(buffer.remaining() >= length) {
+            return;
+        }
+        int required = buffer.position() + length;
+        if(required < 0) {
+            throw new OutOfMemoryError("Value too large");
+        }
+        ByteBuffer grown = pool.acquire(Math.max(required, buffer.capacity() << 1));
+        buffer.flip();
+        grown.put(buffer);
+        pool.release(buffer);
+        buffer = grown;
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of heap {@linkplain ByteBuffer} in power of two size classes.
+ * Buffers larger than the maximum pooled size are allocated
+ * on demand and left to the garbage collector when released.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class BufferPool {
+
+    static final int MIN_BUFFER_SIZE = 1024;
+
+    private final int maxBufferSize;
+    private final int maxPooledBuffers;
+    private final Queue<ByteBuffer>[] pools;
+    private final AtomicInteger[] pooled;
+
+    @SuppressWarnings("unchecked")
+    BufferPool(int maxBufferSize, int maxPooledBuffers) {
+        this.maxBufferSize = Math.max(MIN_BUFFER_SIZE, roundUp(maxBufferSize));
+        this.maxPooledBuffers = maxPooledBuffers;
+        int classes = sizeClass(this.maxBufferSize) + 1;
+        this.pools = new Queue[classes];
+        this.pooled = new AtomicInteger[classes];
+        for(int i = 0; i < classes; i++) {
+            pools[i] = new ConcurrentLinkedQueue<>();
+            pooled[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Acquire a cleared buffer
+     *
+     * @param capacity the minimum capacity of the buffer
+     * @return the buffer
+     */
+    ByteBuffer acquire(int capacity) {
+        int size = Math.max(MIN_BUFFER_SIZE, roundUp(capacity));
+        if(size > maxBufferSize) {
+            return ByteBuffer.allocate(capacity);
+        }
+        int sizeClass = sizeClass(size);
+        ByteBuffer buffer = pools[sizeClass].poll();
+        if(buffer == null) {
+            return ByteBuffer.allocate(size);
+        }
+        pooled[sizeClass].decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Release a buffer back into the pool
+     *
+     * @param buffer the buffer acquired from this pool
+     */
+    void release(ByteBuffer buffer) {
+        if(buffer == null) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        if(capacity > maxBufferSize || capacity < MIN_BUFFER_SIZE || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int sizeClass = sizeClass(capacity);
+        if(pooled[sizeClass].incrementAndGet() > maxPooledBuffers) {
+            pooled[sizeClass].decrementAndGet();
+            return;
+        }
+        pools[sizeClass].offer(buffer);
+    }
+
+    private static int sizeClass(int size) {
+        return Integer.numberOfTrailingZeros(size) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    }
+
+    private static int roundUp(int size) {
+        if(size <= 1) {
+            return 1;
+        }
+        int highest = Integer.highestOneBit(size - 1) << 1;
+        return highest <= 0 ? Integer.MAX_VALUE : highest;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+/**
+ * Snapshot of the value cache statistics of a {@linkplain Dyno} instance
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+    private final long weight;
+    private final long revalidationCount;
+    private final long notModifiedCount;
+    private final long diskHitCount;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long size, long weight) {
+        this(hitCount, missCount, evictionCount, size, weight, 0, 0);
+    }
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long size, long weight,
+                      long revalidationCount, long notModifiedCount) {
+        this(hitCount, missCount, evictionCount, size, weight, revalidationCount, notModifiedCount, 0);
+    }
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long size, long weight,
+                      long revalidationCount, long notModifiedCount, long diskHitCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.weight = weight;
+        this.revalidationCount = revalidationCount;
+        this.notModifiedCount = notModifiedCount;
+        this.diskHitCount = diskHitCount;
+    }
+
+    /**
+     * Get the number of lookups that returned a cached value
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get the number of lookups that had to read from the datastore
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Get the number of values evicted to keep the cache within its bounds
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Get the number of cached values
+     *
+     * @return the number of entries
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the total weight of the cached values,
+     * in bytes when the cache is bounded by weight
+     *
+     * @return the weight
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Get the number of conditional requests sent to revalidate cached values
+     *
+     * @return the revalidation count
+     */
+    public long getRevalidationCount() {
+        return revalidationCount;
+    }
+
+    /**
+     * Get the number of revalidations answered with not modified,
+     * which kept the cached value without downloading it again
+     *
+     * @return the not modified count
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount;
+    }
+
+    /**
+     * Get the number of values read from the disk cache instead of the datastore
+     *
+     * @return the disk hit count
+     */
+    public long getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    /**
+     * Get the ratio of lookups that returned a cached value
+     *
+     * @return the hit rate, 1.0 if there were no lookups
+     */
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount
+                + ", missCount=" + missCount
+                + ", evictionCount=" + evictionCount
+                + ", size=" + size
+                + ", weight=" + weight
+                + ", revalidationCount=" + revalidationCount
+                + ", notModifiedCount=" + notModifiedCount
+                + ", diskHitCount=" + diskHitCount + "}";
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Uncompressed value bytes of an object held in the value cache.
+ * The bytes are shared between readers and must never be modified.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class CachedValue {
+
+    private final byte[] bytes;
+    private final String eTag;
+    private volatile long validatedAt;
+
+    CachedValue(byte[] bytes, String eTag) {
+        this(bytes, eTag, System.nanoTime());
+    }
+
+    CachedValue(byte[] bytes, String eTag, long validatedAt) {
+        this.bytes = bytes;
+        this.eTag = eTag;
+        this.validatedAt = validatedAt;
+    }
+
+    /**
+     * Get a buffer over the value bytes, each call returns an independent buffer
+     *
+     * @return the buffer
+     */
+    ByteBuffer buffer() {
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Get a copy of the value bytes
+     *
+     * @return the copied bytes
+     */
+    byte[] copy() {
+        return bytes.clone();
+    }
+
+    int length() {
+        return bytes.length;
+    }
+
+    String eTag() {
+        return eTag;
+    }
+
+    /**
+     * Get the {@linkplain System#nanoTime()} the value was last confirmed
+     * to match the stored object
+     *
+     * @return the validation time
+     */
+    long validatedAt() {
+        return validatedAt;
+    }
+
+    /**
+     * Mark the value as confirmed to match the stored object
+     */
+    void validated() {
+        this.validatedAt = System.nanoTime();
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import org.msgpack.MessagePack;
+import org.msgpack.template.Template;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared codec registry owned by a {@linkplain Dyno} instance.
+ * Each value class is registered and its MessagePack template compiled
+ * only once, subsequent reads and writes reuse the cached codec.
+ * Value types with a custom {@linkplain ValueCodec} bypass MessagePack.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class CodecRegistry {
+
+    private final MessagePack msgpack = new MessagePack();
+    private final ConcurrentMap<Class<?>, ValueCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    /**
+     * Register a custom codec for a value type
+     *
+     * @param clazz the value class
+     * @param codec the codec to use for the value class
+     * @param <T> class type
+     */
+    <T> void register(Class<T> clazz, ValueCodec<T> codec) {
+        if(clazz == null || codec == null) {
+            throw new IllegalArgumentException("Value type and codec cannot be null");
+        }
+        codecs.put(clazz, codec);
+    }
+
+    /**
+     * Get the codec of a value class
+     *
+     * @param clazz the value class
+     * @param <T> class type
+     * @return the registered codec or the MessagePack codec of the class
+     */
+    @SuppressWarnings("unchecked")
+    <T> ValueCodec<T> codec(Class<T> clazz) {
+        ValueCodec<?> codec = codecs.get(clazz);
+        if(codec == null) {
+            codec = codecs.computeIfAbsent(clazz, this::compile);
+        }
+        return (ValueCodec<T>) codec;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ValueCodec<?> compile(Class<?> clazz) {
+        Class<Object> type = (Class<Object>) clazz;
+        Template<Object> template;
+        try {
+            if(!isPrimitive(type)) {
+                msgpack.register(type);
+            }
+            template = msgpack.lookup(type);
+        } catch (Exception e) {
+            // Falls back to the untyped MessagePack methods
+            template = null;
+        }
+        return new MessagePackCodec<>(msgpack, template, type);
+    }
+
+    /**
+     * Check if class is a Java primitive type
+     *
+     * @param clazz the class to check
+     * @return true if class is primitive, false if class is not primitive
+     */
+    static boolean isPrimitive(Class clazz) {
+        if(clazz.equals(String.class)
+                || clazz.equals(Number.class)
+                || clazz.equals(Short.class)
+                || clazz.equals(Long.class)
+                || clazz.equals(Double.class)
+                || clazz.equals(Float.class)
+                || clazz.equals(Integer.class)
+                || clazz.equals(Boolean.class)
+        ) {
+           return true;
+        }
+        return false;
+    }
+
+}
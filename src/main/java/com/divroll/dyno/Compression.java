@@ -0,0 +1,119 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Value compression codecs, the codec of a stored value
+ * is recorded in the object metadata
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+public enum Compression {
+
+    NONE("identity"),
+    DEFLATE("deflate");
+
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION);
+        }
+    };
+
+    private final String name;
+
+    Compression(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name recorded in the object metadata
+     *
+     * @return the compression name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get compression by name
+     *
+     * @param name the compression name recorded in the object metadata
+     * @return the compression, {@linkplain #NONE} if name is null
+     */
+    public static Compression of(String name) {
+        if(name == null) {
+            return NONE;
+        }
+        for(Compression compression : values()) {
+            if(compression.name.equalsIgnoreCase(name)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported compression: " + name);
+    }
+
+    /**
+     * Compress bytes
+     *
+     * @param bytes the bytes to compress
+     * @param offset the offset of the first byte
+     * @param length the number of bytes to compress
+     * @param outputStream the stream to write compressed bytes into
+     * @throws IOException if bytes cannot be written
+     */
+    void compress(byte[] bytes, int offset, int length, OutputStream outputStream) throws IOException {
+        switch (this) {
+            case DEFLATE:
+                Deflater deflater = DEFLATER.get();
+                try {
+                    DeflaterOutputStream deflaterStream = new DeflaterOutputStream(outputStream, deflater);
+                    deflaterStream.write(bytes, offset, length);
+                    deflaterStream.finish();
+                } finally {
+                    deflater.reset();
+                }
+                break;
+            default:
+                outputStream.write(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Wrap stream of compressed bytes
+     *
+     * @param inputStream the stream of compressed bytes
+     * @return the stream of decompressed bytes
+     */
+    InputStream decompress(InputStream inputStream) {
+        switch (this) {
+            case DEFLATE:
+                return new InflaterInputStream(inputStream);
+            default:
+                return inputStream;
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compresses values above a size threshold.
+ * The compression ratio is measured per value type, types that
+ * do not compress well are only sampled once in a while.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class Compressor {
+
+    static final String METADATA_COMPRESSION = "dyno-compression";
+    static final String METADATA_LENGTH = "dyno-length";
+
+    private static final int SAMPLE_INTERVAL = 32;
+    private static final double SMOOTHING = 0.2;
+
+    private final Compression compression;
+    private final int threshold;
+    private final double maxRatio;
+    private final BufferPool bufferPool;
+    private final ConcurrentMap<Class<?>, Ratio> ratios = new ConcurrentHashMap<>();
+
+    Compressor(Compression compression, int threshold, double maxRatio, BufferPool bufferPool) {
+        this.compression = compression;
+        this.threshold = threshold;
+        this.maxRatio = maxRatio;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Compress value bytes
+     *
+     * @param type the value type, used to track its compression ratio
+     * @param bytes the value bytes
+     * @param length the number of value bytes
+     * @return the compressed bytes, null if compression was skipped
+     * @throws IOException if bytes cannot be compressed
+     */
+    BufferOutputStream compress(Class<?> type, byte[] bytes, int length) throws IOException {
+        if(length < threshold) {
+            return null;
+        }
+        Ratio ratio = ratios.computeIfAbsent(type, t -> new Ratio());
+        if(!ratio.shouldSample(maxRatio)) {
+            return null;
+        }
+        BufferOutputStream compressed = new BufferOutputStream(bufferPool, length);
+        try {
+            compression.compress(bytes, 0, length, compressed);
+        } catch (IOException e) {
+            compressed.close();
+            throw e;
+        }
+        double measured = (double) compressed.size() / length;
+        ratio.update(measured);
+        if(measured > maxRatio) {
+            compressed.close();
+            return null;
+        }
+        return compressed;
+    }
+
+    /**
+     * Record compression in object metadata
+     *
+     * @param metadata the object metadata
+     * @param length the uncompressed length
+     */
+    void describe(ObjectMetadata metadata, long length) {
+        metadata.addUserMetadata(METADATA_COMPRESSION, compression.getName());
+        metadata.addUserMetadata(METADATA_LENGTH, String.valueOf(length));
+    }
+
+    /**
+     * Wrap object content with the compression recorded in its metadata
+     *
+     * @param metadata the object metadata
+     * @param inputStream the object content
+     * @return the decompressed content
+     */
+    static InputStream decompress(ObjectMetadata metadata, InputStream inputStream) {
+        return Compression.of(metadata.getUserMetaDataOf(METADATA_COMPRESSION)).decompress(inputStream);
+    }
+
+    /**
+     * Get the uncompressed length of an object
+     *
+     * @param metadata the object metadata
+     * @return the uncompressed length, -1 if unknown
+     */
+    static long length(ObjectMetadata metadata) {
+        String length = metadata.getUserMetaDataOf(METADATA_LENGTH);
+        if(length != null) {
+            return Long.parseLong(length);
+        }
+        if(metadata.getUserMetaDataOf(METADATA_COMPRESSION) != null) {
+            return -1;
+        }
+        return metadata.getContentLength();
+    }
+
+    /**
+     * Check if an object is stored compressed
+     *
+     * @param metadata the object metadata
+     * @return true if compressed, false if otherwise
+     */
+    static boolean isCompressed(ObjectMetadata metadata) {
+        return Compression.of(metadata.getUserMetaDataOf(METADATA_COMPRESSION)) != Compression.NONE;
+    }
+
+    private static final class Ratio {
+        private volatile double average = 0;
+        private final AtomicInteger skipped = new AtomicInteger();
+
+        boolean shouldSample(double maxRatio) {
+            return average <= maxRatio || skipped.incrementAndGet() % SAMPLE_INTERVAL == 0;
+        }
+
+        void update(double measured) {
+            average = average == 0 ? measured : average + SMOOTHING * (measured - average);
+        }
+    }
+
+}
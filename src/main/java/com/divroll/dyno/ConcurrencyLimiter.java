@@ -0,0 +1,210 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import com.amazonaws.AmazonServiceException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive limit of concurrent requests to the datastore.
+ * The limit grows additively while requests succeed at normal latency,
+ * and shrinks multiplicatively when the datastore throttles requests
+ * or when the short term latency rises well above the long term latency.
+ * Requests over the limit wait in a bounded queue, or are rejected
+ * with {@linkplain ThrottledException} when the queue is full or the wait times out.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class ConcurrencyLimiter {
+
+    private static final double THROTTLE_BACKOFF = 0.5;
+    private static final double LATENCY_BACKOFF = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double SHORT_RTT_WEIGHT = 0.2;
+    private static final double LONG_RTT_WEIGHT = 0.01;
+    private static final long MIN_DECREASE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxWaiting;
+    private final long maxWaitNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private double shortRtt;
+    private double longRtt;
+    private long lastDecrease;
+
+    ConcurrencyLimiter(int initialLimit, int maxLimit, int maxWaiting, long maxWaitNanos) {
+        if(initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must be at least 1 and the maximum at least the initial limit");
+        }
+        this.minLimit = 1;
+        this.maxLimit = maxLimit;
+        this.maxWaiting = maxWaiting;
+        this.maxWaitNanos = maxWaitNanos;
+        this.limit = initialLimit;
+        this.lastDecrease = System.nanoTime();
+    }
+
+    /**
+     * Run a request within the limit
+     *
+     * @param request the request
+     * @param <R> response type
+     * @return the response
+     * @throws ThrottledException if the request was rejected before it was sent
+     */
+    <R> R call(Supplier<R> request) {
+        acquire();
+        long start = System.nanoTime();
+        boolean overloaded = false;
+        try {
+            return request.get();
+        } catch (AmazonServiceException e) {
+            overloaded = isThrottling(e);
+            throw e;
+        } finally {
+            release(System.nanoTime() - start, overloaded);
+        }
+    }
+
+    private void acquire() {
+        lock.lock();
+        try {
+            if(inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if(waiting >= maxWaiting) {
+                rejected.increment();
+                throw new ThrottledException("Too many requests waiting, limit is " + (int) limit);
+            }
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while(inFlight >= (int) limit) {
+                    if(remaining <= 0) {
+                        rejected.increment();
+                        throw new ThrottledException("Timed out waiting for a request slot, limit is " + (int) limit);
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ThrottledException("Interrupted while waiting for a request slot", e);
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long rtt, boolean overloaded) {
+        lock.lock();
+        try {
+            int used = inFlight--;
+            long now = System.nanoTime();
+            if(overloaded) {
+                throttled.increment();
+                decrease(now, THROTTLE_BACKOFF);
+            } else {
+                if(longRtt == 0) {
+                    shortRtt = rtt;
+                    longRtt = rtt;
+                } else {
+                    shortRtt += SHORT_RTT_WEIGHT * (rtt - shortRtt);
+                    longRtt += LONG_RTT_WEIGHT * (rtt - longRtt);
+                }
+                if(shortRtt > longRtt * LATENCY_TOLERANCE) {
+                    decrease(now, LATENCY_BACKOFF);
+                } else if(used * 2 >= limit) {
+                    // Grow only while the limit is in use, by one request per limit of successes
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decrease the limit, at most once per interval so that a burst of
+     * throttled responses of requests sent together counts as one signal
+     */
+    private void decrease(long now, double backoff) {
+        if(now - lastDecrease < Math.max(MIN_DECREASE_INTERVAL, (long) shortRtt)) {
+            return;
+        }
+        limit = Math.max(minLimit, limit * backoff);
+        lastDecrease = now;
+    }
+
+    /**
+     * Get the current limit
+     *
+     * @return the number of requests allowed in flight
+     */
+    int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of responses that signaled the datastore is overloaded
+     *
+     * @return the throttled response count
+     */
+    long throttled() {
+        return throttled.sum();
+    }
+
+    /**
+     * Get the number of requests rejected before they were sent
+     *
+     * @return the rejected request count
+     */
+    long rejected() {
+        return rejected.sum();
+    }
+
+    static boolean isThrottling(AmazonServiceException e) {
+        return e.getStatusCode() == 503 || e.getStatusCode() == 429
+                || "SlowDown".equals(e.getErrorCode())
+                || "Throttling".equals(e.getErrorCode())
+                || "RequestLimitExceeded".equals(e.getErrorCode());
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Concurrency limiters of requests by key prefix,
+ * the longest matching prefix wins. Requests of keys that match
+ * no prefix are not limited.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class ConcurrencyLimits {
+
+    private final List<Map.Entry<String, ConcurrencyLimiter>> limiters;
+
+    /**
+     * Create the limits
+     *
+     * @param limiters the limiter by key prefix
+     */
+    ConcurrencyLimits(Map<String, ConcurrencyLimiter> limiters) {
+        this.limiters = new ArrayList<>(limiters.entrySet());
+        this.limiters.sort(Comparator.comparingInt(
+                (Map.Entry<String, ConcurrencyLimiter> entry) -> entry.getKey().length()).reversed());
+    }
+
+    /**
+     * Run a request within the limit of its key
+     *
+     * @param key the key or prefix of the request
+     * @param request the request
+     * @param <R> response type
+     * @return the response
+     * @throws ThrottledException if the request was rejected before it was sent
+     */
+    <R> R call(String key, Supplier<R> request) {
+        ConcurrencyLimiter limiter = limiter(key);
+        return limiter != null ? limiter.call(request) : request.get();
+    }
+
+    /**
+     * Get the limiter of a key
+     *
+     * @param key the key
+     * @return the limiter of the longest matching prefix, null if no prefix matches
+     */
+    ConcurrencyLimiter limiter(String key) {
+        String match = key != null ? key : "";
+        for(Map.Entry<String, ConcurrencyLimiter> entry : limiters) {
+            if(match.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the current limit of each prefix
+     *
+     * @return the number of requests allowed in flight by key prefix, longest prefix first
+     */
+    Map<String, Integer> limits() {
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        for(Map.Entry<String, ConcurrencyLimiter> entry : limiters) {
+            limits.put(entry.getKey(), entry.getValue().limit());
+        }
+        return limits;
+    }
+
+    /**
+     * Get the number of throttled responses of all prefixes
+     *
+     * @return the throttled response count
+     */
+    long throttled() {
+        long throttled = 0;
+        for(Map.Entry<String, ConcurrencyLimiter> entry : limiters) {
+            throttled += entry.getValue().throttled();
+        }
+        return throttled;
+    }
+
+    /**
+     * Get the number of requests of all prefixes rejected before they were sent
+     *
+     * @return the rejected request count
+     */
+    long rejected() {
+        long rejected = 0;
+        for(Map.Entry<String, ConcurrencyLimiter> entry : limiters) {
+            rejected += entry.getValue().rejected();
+        }
+        return rejected;
+    }
+
+}
@@ -0,0 +1,463 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * Local disk cache tier of object bytes.
+ * Each version of an object is stored in its own memory-mapped segment file,
+ * so readers of a replaced version keep reading the bytes they looked up.
+ * The index of segments is journaled to disk so the cache survives restarts.
+ * The total size of segments is kept within a byte budget by evicting
+ * the least recently used segments.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class DiskCache {
+
+    private static final String JOURNAL = "index.journal";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String PUT = "PUT";
+    private static final String DEL = "DEL";
+    private static final String NO_ETAG = "-";
+
+    private final Path directory;
+    private final long maximumBytes;
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private Writer journal;
+    private int journalLines;
+    private long sequence;
+
+    DiskCache(File directory, long maximumBytes) throws IOException {
+        this.directory = directory.toPath();
+        this.maximumBytes = maximumBytes;
+        Files.createDirectories(this.directory);
+        replay();
+    }
+
+    /**
+     * Get a cached segment
+     *
+     * @param key the object key
+     * @return the segment entry, null if not cached
+     */
+    synchronized Entry get(String key) {
+        return index.get(key);
+    }
+
+    /**
+     * Check if an object fits the cache budget
+     *
+     * @param length the number of object bytes, -1 if unknown
+     * @return true if an object of known length fits, false if otherwise
+     */
+    boolean fits(long length) {
+        return length >= 0 && length <= maximumBytes;
+    }
+
+    /**
+     * Store object bytes into a new segment, replacing any previous segment of the key
+     *
+     * @param key the object key
+     * @param source the object bytes
+     * @param length the number of bytes, -1 if unknown
+     * @param eTag the ETag of the object
+     * @return the segment entry, null if the object does not fit the cache budget
+     * @throws IOException if the segment cannot be written
+     */
+    Entry put(String key, InputStream source, long length, String eTag) throws IOException {
+        if(length > maximumBytes) {
+            return null;
+        }
+        Path temp = createTemp();
+        try {
+            long written = write(temp, source, length);
+            if(written > maximumBytes) {
+                return null;
+            }
+            return commit(key, temp, written, eTag);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Create a temporary segment file in the cache directory,
+     * written by the caller and stored with {@linkplain #commit(String, Path, long, String)}
+     *
+     * @return the path of the temporary segment
+     * @throws IOException if the file cannot be created
+     */
+    Path createTemp() throws IOException {
+        return Files.createTempFile(directory, "dyno", ".tmp");
+    }
+
+    /**
+     * Store a written temporary segment, replacing any previous segment of the key.
+     * The segment gets a new file name, the previous segment is deleted
+     * so readers that already opened it finish reading the previous version.
+     *
+     * @param key the object key
+     * @param temp the temporary segment, moved into the cache
+     * @param length the number of bytes written
+     * @param eTag the ETag of the object
+     * @return the segment entry, null if the object does not fit the cache budget
+     * @throws IOException if the segment cannot be stored
+     */
+    Entry commit(String key, Path temp, long length, String eTag) throws IOException {
+        if(length > maximumBytes) {
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = new Entry(key, segmentName(key, ++sequence), length, eTag);
+            Files.move(temp, directory.resolve(entry.fileName), StandardCopyOption.ATOMIC_MOVE);
+            Entry previous = index.put(key, entry);
+            if(previous != null) {
+                totalBytes -= previous.length;
+                delete(previous);
+            }
+            totalBytes += length;
+            append(PUT, entry);
+            evict(entry);
+            return entry;
+        }
+    }
+
+    /**
+     * Transfer segment bytes into a channel without copying them through the heap
+     *
+     * @param entry the segment entry
+     * @param target the channel to write into
+     * @return true if the segment was transferred, false if it was evicted meanwhile
+     * @throws IOException if the segment cannot be transferred
+     */
+    boolean transferTo(Entry entry, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(entry.fileName), StandardOpenOption.READ)) {
+            long position = 0;
+            while(position < entry.length) {
+                long transferred = channel.transferTo(position, entry.length - position, target);
+                if(transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+            return position == entry.length;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Read segment bytes into memory
+     *
+     * @param entry the segment entry
+     * @return the bytes, null if the segment was evicted meanwhile
+     * @throws IOException if the segment cannot be read
+     */
+    byte[] read(Entry entry) throws IOException {
+        if(entry.length > Integer.MAX_VALUE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(entry.fileName), StandardOpenOption.READ)) {
+            byte[] bytes = new byte[(int) entry.length];
+            if(entry.length > 0) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, entry.length);
+                mapped.get(bytes);
+            }
+            return bytes;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Open a byte range of a segment
+     *
+     * @param entry the segment entry
+     * @param offset the position of the first byte
+     * @param length the maximum number of bytes
+     * @return the stream of the range, null if the segment was evicted meanwhile
+     * @throws IOException if the segment cannot be opened
+     */
+    InputStream open(Entry entry, long offset, long length) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.resolve(entry.fileName), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        channel.position(Math.min(offset, entry.length));
+        return ByteStreams.limit(Channels.newInputStream(channel), length);
+    }
+
+    /**
+     * Remove the segment of a key
+     *
+     * @param key the object key
+     */
+    synchronized void invalidate(String key) {
+        Entry entry = index.remove(key);
+        if(entry != null) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Remove a segment unless it was replaced meanwhile
+     *
+     * @param entry the segment entry
+     */
+    synchronized void invalidate(Entry entry) {
+        if(index.get(entry.key) == entry) {
+            index.remove(entry.key);
+            remove(entry);
+        }
+    }
+
+    private long write(Path path, InputStream source, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ReadableByteChannel input = Channels.newChannel(source);
+            if(length < 0 || length > Integer.MAX_VALUE) {
+                long position = 0;
+                long transferred;
+                while((transferred = channel.transferFrom(input, position, Integer.MAX_VALUE)) > 0) {
+                    position += transferred;
+                    if(position > maximumBytes) {
+                        return position;
+                    }
+                }
+                channel.force(false);
+                return position;
+            }
+            if(length > 0) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                while(mapped.hasRemaining()) {
+                    if(input.read(mapped) < 0) {
+                        throw new EOFException("Object ended before " + length + " bytes");
+                    }
+                }
+                mapped.force();
+            }
+            return length;
+        }
+    }
+
+    private void evict(Entry keep) throws IOException {
+        Iterator<Entry> eldest = index.values().iterator();
+        while(totalBytes > maximumBytes && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            if(entry == keep) {
+                continue;
+            }
+            eldest.remove();
+            remove(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        totalBytes -= entry.length;
+        delete(entry);
+        try {
+            append(DEL, entry);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void delete(Entry entry) {
+        try {
+            Files.deleteIfExists(directory.resolve(entry.fileName));
+        } catch (IOException e) {
+            // Left for the next replay, which deletes segments that are not in the index
+            e.printStackTrace();
+        }
+    }
+
+    private void append(String operation, Entry entry) throws IOException {
+        if(PUT.equals(operation)) {
+            journal.write(PUT + '\t' + entry.fileName + '\t' + entry.length + '\t'
+                    + (entry.eTag != null ? entry.eTag : NO_ETAG) + '\t'
+                    + URLEncoder.encode(entry.key, "UTF-8") + '\n');
+        } else {
+            journal.write(DEL + '\t' + URLEncoder.encode(entry.key, "UTF-8") + '\n');
+        }
+        journal.flush();
+        if(++journalLines > 2 * index.size() + 1024) {
+            compact();
+        }
+    }
+
+    /**
+     * Rebuild the index from the journal, dropping segments that are missing
+     * or incomplete and segment files that are not in the index
+     */
+    private synchronized void replay() throws IOException {
+        Path journalPath = directory.resolve(JOURNAL);
+        if(Files.exists(journalPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t");
+                    if(fields.length == 5 && PUT.equals(fields[0])) {
+                        String key = URLDecoder.decode(fields[4], "UTF-8");
+                        String eTag = NO_ETAG.equals(fields[3]) ? null : fields[3];
+                        // Written before the restart, the object may have changed since
+                        index.put(key, new Entry(key, fields[1], Long.parseLong(fields[2]), eTag, false));
+                    } else if(fields.length == 2 && DEL.equals(fields[0])) {
+                        index.remove(URLDecoder.decode(fields[1], "UTF-8"));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // A torn write at the end of the journal, keep what was read
+            }
+        }
+        Iterator<Entry> entries = index.values().iterator();
+        while(entries.hasNext()) {
+            Entry entry = entries.next();
+            Path segment = directory.resolve(entry.fileName);
+            if(!Files.exists(segment) || Files.size(segment) != entry.length) {
+                entries.remove();
+            } else {
+                totalBytes += entry.length;
+            }
+        }
+        Set<String> segments = new HashSet<>();
+        for(Entry entry : index.values()) {
+            segments.add(entry.fileName);
+            sequence = Math.max(sequence, sequenceOf(entry.fileName));
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for(Path file : files) {
+                String name = file.getFileName().toString();
+                if(!segments.contains(name) && !JOURNAL.equals(name)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        compact();
+        if(totalBytes > maximumBytes) {
+            evict(null);
+        }
+    }
+
+    /**
+     * Rewrite the journal with the current index in least recently used order
+     */
+    private void compact() throws IOException {
+        if(journal != null) {
+            journal.close();
+        }
+        Path journalPath = directory.resolve(JOURNAL);
+        Path temp = directory.resolve(JOURNAL + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for(Entry entry : index.values()) {
+                writer.write(PUT + '\t' + entry.fileName + '\t' + entry.length + '\t'
+                        + (entry.eTag != null ? entry.eTag : NO_ETAG) + '\t'
+                        + URLEncoder.encode(entry.key, "UTF-8") + '\n');
+            }
+        }
+        Files.move(temp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        journalLines = index.size();
+    }
+
+    private static String segmentName(String key, long sequence) {
+        return Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString()
+                + '.' + Long.toHexString(sequence) + SEGMENT_SUFFIX;
+    }
+
+    /**
+     * Get the sequence number of a segment file name
+     *
+     * @param fileName the segment file name
+     * @return the sequence number, 0 if the name has none
+     */
+    private static long sequenceOf(String fileName) {
+        String[] parts = fileName.split("\\.");
+        if(parts.length != 3) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(parts[1], 16);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Cached segment of an object
+     */
+    static final class Entry {
+        final String key;
+        final String fileName;
+        final long length;
+        final String eTag;
+        private volatile long validatedAt = System.nanoTime();
+        private volatile boolean validated;
+
+        Entry(String key, String fileName, long length, String eTag) {
+            this(key, fileName, length, eTag, true);
+        }
+
+        Entry(String key, String fileName, long length, String eTag, boolean validated) {
+            this.key = key;
+            this.fileName = fileName;
+            this.length = length;
+            this.eTag = eTag;
+            this.validated = validated;
+        }
+
+        long validatedAt() {
+            return validatedAt;
+        }
+
+        /**
+         * Check if the segment was confirmed to match the stored object by this process,
+         * segments replayed from the journal must be revalidated before they are served
+         *
+         * @return true if validated, false if otherwise
+         */
+        boolean isValidated() {
+            return validated;
+        }
+
+        void validated() {
+            this.validatedAt = System.nanoTime();
+            this.validated = true;
+        }
+    }
+
+}
@@ -15,24 +15,47 @@
  */
 package com.divroll.dyno;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.*;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
 import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
 import com.google.common.io.Files;
-import org.msgpack.MessagePack;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.UUID;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Dyno implements methods that allows easy key-value datastore
@@ -48,6 +71,48 @@ public class Dyno {
     private String bucketName;
     private String keySpace;
     private Integer bufferSize;
+    private boolean streamingReads = false;
+    private Compressor compressor;
+    private TinyLfuCache<String, CachedValue> valueCache;
+    private RevalidationPolicy revalidationPolicy;
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private Cache<String, Boolean> negativeCache;
+    private DiskCache diskCache;
+    private MultipartUploader multipartUploader;
+    private SingleFlight<String, CachedValue> singleFlight = new SingleFlight<>();
+    private SingleFlight<String, ByteBuffer> readFlight = new SingleFlight<>();
+    private ConcurrencyLimits limits;
+    private boolean hashKeys = false;
+    private volatile Boolean conditionalWrites;
+    private KeyLock keyLock = new LocalKeyLock();
+    private int readAhead = DynoClientBuilder.DEFAULT_READ_AHEAD;
+    private RetryPolicy retryPolicy;
+    private LatencyTracker hedgeLatency;
+    private volatile ExecutorService hedgeExecutor;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private int rangePartSize = DynoClientBuilder.DEFAULT_PART_SIZE;
+    private int rangeParallelism = DynoClientBuilder.DEFAULT_TRANSFER_PARALLELISM;
+    private volatile ExecutorService executor;
+    private volatile ExecutorService asyncExecutor;
+    private int concurrency = DynoClientBuilder.DEFAULT_CONCURRENCY;
+    private int queueCapacity = DynoClientBuilder.DEFAULT_QUEUE_CAPACITY;
+    private final CodecRegistry codecRegistry = new CodecRegistry();
+    private final BufferPool bufferPool = new BufferPool(MAX_POOLED_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final int MAX_DELETE_BATCH = 1000;
+    private static final int MAX_LIST_PAGE = 1000;
+    private static final int RANGE_CHUNK_SIZE = 64 * 1024;
+    private static final int KEY_SHARDS = 16;
+    private static final int GENERATION_STRIPES = 1024;
+    private static final char SHARD_SEPARATOR = '/';
+    static final String IF_NONE_MATCH = "If-None-Match";
 
     public Dyno(String accessKey, String secretKey, String s3Endpoint, String region, String bucketName) {
         this(null, accessKey, secretKey, s3Endpoint, region, bucketName, null, null);
@@ -70,6 +135,8 @@ public class Dyno {
         this.bucketName = bucketName == null ? DynoClientBuilder.DEFAULT_BUCKET_NAME : bucketName;
         this.keySpace = keySpace == null ? DynoClientBuilder.DEFAULT_KEY_SPACE : keySpace;
         this.bufferSize = bufferSize == null ? DynoClientBuilder.DEFAULT_BUFFER_SIZE : bufferSize;
+        this.multipartUploader = new MultipartUploader(this, s3Client, this.bucketName,
+                DynoClientBuilder.DEFAULT_PART_SIZE, DynoClientBuilder.DEFAULT_TRANSFER_PARALLELISM);
     }
 
     /**
@@ -92,6 +159,46 @@ public class Dyno {
         return putIfAbsent(entity.getKeyString(), entity.getValue(), entity.getValueType());
     }
 
+    /**
+     * Puts {@linkplain Entity} collection into the datastore, uploads are sent concurrently
+     * up to the configured concurrency
+     *
+     * @param entities the entities to put
+     * @return the outcome of each entity, in the iteration order of the given entities
+     */
+    public List<Result<Void>> putAll(Collection<Entity> entities) {
+        return putAll(entities, false, concurrency);
+    }
+
+    /**
+     * Puts {@linkplain Entity} collection into the datastore, entities whose key exists are not put
+     *
+     * @param entities the entities to put
+     * @return the outcome of each entity, in the iteration order of the given entities,
+     *         {@linkplain Result.Status#CONFLICT} for entities whose key exists
+     */
+    public List<Result<Void>> putAllIfAbsent(Collection<Entity> entities) {
+        return putAll(entities, true, concurrency);
+    }
+
+    /**
+     * Puts {@linkplain Entity} collection into the datastore
+     *
+     * @param entities the entities to put
+     * @param putIfAbsent true to put only entities whose key does not exists
+     * @param parallelism maximum number of uploads in flight
+     * @return the outcome of each entity, in the iteration order of the given entities
+     */
+    public List<Result<Void>> putAll(Collection<Entity> entities, boolean putIfAbsent, int parallelism) {
+        return fanOut(new ArrayList<>(entities), parallelism, entity -> {
+            if(put(entity, putIfAbsent)) {
+                return Result.<Void>ok(entity.getKey(), null);
+            }
+            return putIfAbsent ? Result.<Void>conflict(entity.getKey())
+                    : Result.<Void>failed(entity.getKey(), new IllegalStateException("Entity was not put"));
+        }, (entity, e) -> Result.failed(entity.getKey(), e));
+    }
+
     /**
      * Get entity
      *
@@ -101,13 +208,29 @@ public class Dyno {
      * @return the {@linkplain Entity}
      */
     public <T> Entity getEntity(String key, Class<T> valueType) {
+        return getEntity(key, valueType, streamingReads);
+    }
+
+    /**
+     * Get entity, the number of bytes decoded is reported by {@linkplain Entity#getSize()}
+     *
+     * @param key the key of the value to get
+     * @param valueType the type of value
+     * @param stream true to decode directly from the object stream
+     *               instead of reading the whole value into a buffer first
+     * @param <T> value class type
+     * @return the {@linkplain Entity}
+     */
+    public <T> Entity getEntity(String key, Class<T> valueType, boolean stream) {
         Entity result = null;
         try {
-            byte[] raw = getByte(key);
-            MessagePack msgpack = new MessagePack();
-            T value = msgpack.read(raw, valueType);
+            AtomicLong size = new AtomicLong(-1);
+            T value = read(key, valueType, stream, size::set);
             result = EntityBuilder.create(this)
                     .build(key, value, valueType);
+            result.setSize(size.get());
+        } catch (ThrottledException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -123,13 +246,25 @@ public class Dyno {
      * @return the value
      */
     public <T> T get(String key, Class<T> clazz) {
+        return get(key, clazz, streamingReads);
+    }
+
+    /**
+     * Get value by key
+     *
+     * @param key the string key of value to get
+     * @param clazz class type of value
+     * @param stream true to decode directly from the object stream
+     *               instead of reading the whole value into a buffer first
+     * @param <T> type of value
+     * @return the value
+     */
+    public <T> T get(String key, Class<T> clazz, boolean stream) {
         T result = null;
         try {
-            byte[] raw = getByte(key);
-            if(raw != null) {
-                MessagePack msgpack = new MessagePack();
-                result = msgpack.read(raw, clazz);
-            }
+            result = read(key, clazz, stream, null);
+        } catch (ThrottledException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -143,7 +278,131 @@ public class Dyno {
      * @param outputStream the stream output
      */
     public void get(String key, OutputStream outputStream) {
-        getStream(key, outputStream);
+        getStream(key, outputStream, channel(outputStream));
+    }
+
+    /**
+     * Get a byte range of a value, only the bytes of the range are read from the datastore
+     * unless the value is compressed
+     *
+     * @param key the string key of value to get
+     * @param offset the position of the first byte
+     * @param length the maximum number of bytes
+     * @return the bytes, fewer than length if the value ends first, null if key does not exists
+     */
+    public ByteBuffer get(String key, long offset, int length) {
+        try (InputStream inputStream = getInputStream(key, offset, length)) {
+            if(inputStream == null) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            int read = ByteStreams.read(inputStream, bytes, 0, length);
+            return ByteBuffer.wrap(bytes, 0, read).slice();
+        } catch (ThrottledException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Write a byte range of a value into a channel
+     *
+     * @param key the string key of value to get
+     * @param offset the position of the first byte
+     * @param length the maximum number of bytes
+     * @param channel the channel to write into
+     * @return the number of bytes written, -1 if key does not exists or the range cannot be read
+     */
+    public long get(String key, long offset, long length, WritableByteChannel channel) {
+        try (InputStream inputStream = getInputStream(key, offset, length)) {
+            if(inputStream != null) {
+                return ByteStreams.copy(Channels.newChannel(inputStream), channel);
+            }
+        } catch (ThrottledException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Open a byte range of a value as stream.
+     * The range is read from the value cache or the disk cache if the key is cached,
+     * otherwise a ranged GET is issued. Compressed values are read as a whole
+     * and decompressed up to the end of the range.
+     *
+     * @param key the string key of value to get
+     * @param offset the position of the first byte
+     * @param length the maximum number of bytes
+     * @return the stream of the range, which must be closed, null if key does not exists
+     * @throws IOException if the range cannot be read
+     */
+    public InputStream getInputStream(String key, long offset, long length) throws IOException {
+        if(offset < 0 || length < 0) {
+            throw new IllegalArgumentException("offset and length cannot be negative");
+        }
+        if(s3Client == null || isMissing(key)) {
+            return null;
+        }
+        if(valueCache != null) {
+            CachedValue cached = valueCache.get(key);
+            if(cached != null && !isStale(key, cached)) {
+                int from = (int) Math.min(offset, cached.length());
+                int to = (int) Math.min(cached.length(), from + length);
+                ByteBuffer buffer = cached.buffer();
+                return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + from, to - from);
+            }
+        }
+        if(diskCache != null) {
+            DiskCache.Entry entry = diskCache.get(key);
+            if(entry != null && !isStale(key, entry)) {
+                InputStream inputStream = diskCache.open(entry, offset, length);
+                if(inputStream != null) {
+                    diskHits.increment();
+                    return inputStream;
+                }
+            }
+        }
+        if(length == 0) {
+            return isExists(key) ? new ByteArrayInputStream(new byte[0]) : null;
+        }
+        S3Object s3Object;
+        try {
+            s3Object = getObject(key, new GetObjectRequest(bucketName, objectKey(key)).withRange(offset, offset + length - 1));
+        } catch (AmazonS3Exception e) {
+            if(e.getStatusCode() != 416) {
+                throw e;
+            }
+            // Range starts after the end of the stored bytes, which are shorter than a compressed value
+            if(!Compressor.isCompressed(call(key, () -> s3Client.getObjectMetadata(bucketName, objectKey(key))))) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            s3Object = null;
+        }
+        InputStream inputStream;
+        if(s3Object != null && !Compressor.isCompressed(s3Object.getObjectMetadata())) {
+            if(s3Object.getObjectMetadata().getContentRange() != null) {
+                return s3Object.getObjectContent();
+            }
+            // Range was ignored, the whole value was returned
+            inputStream = s3Object.getObjectContent();
+        } else {
+            if(s3Object != null) {
+                s3Object.getObjectContent().abort();
+            }
+            s3Object = getObject(key, new GetObjectRequest(bucketName, objectKey(key)));
+            inputStream = Compressor.decompress(s3Object.getObjectMetadata(), s3Object.getObjectContent());
+        }
+        try {
+            ByteStreams.skipFully(inputStream, offset);
+        } catch (EOFException e) {
+            inputStream.close();
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        return ByteStreams.limit(inputStream, length);
     }
 
     /**
@@ -154,9 +413,14 @@ public class Dyno {
      * @return true if value was put, false if otherwise
      */
     public boolean put(String key, byte[] value, boolean putIfAbsent) {
+        if(value == null) {
+            throw new IllegalArgumentException("Key and/or value cannot be empty or null");
+        }
         try {
-            return put(key, ByteSource.wrap(value).openStream(), putIfAbsent);
-        } catch (IOException e) {
+            return put(key, value, value.length, byte[].class, putIfAbsent);
+        } catch (ThrottledException e) {
+            throw e;
+        } catch (Exception e) {
             e.printStackTrace();
         }
         return false;
@@ -176,8 +440,9 @@ public class Dyno {
     public <T> boolean put(String key, T value, Class<T> clazz) {
         boolean result = false;
         try {
-            byte[] raw = toByteArray(value, clazz);
-            result = put(key, raw, false);
+            result = put(key, value, clazz, false);
+        } catch (ThrottledException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -194,8 +459,15 @@ public class Dyno {
      * @return true if value was put, false if otherwise
      */
     public <T> boolean putIfAbsent(String key, T value, Class<T> clazz) {
-        byte[] raw = toByteArray(value, clazz);
-        return put(key, raw, true);
+        boolean result = false;
+        try {
+            result = put(key, value, clazz, true);
+        } catch (ThrottledException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return result;
     };
 
     /**
@@ -206,12 +478,7 @@ public class Dyno {
      * @return true if value was put, false if otherwise
      */
     public boolean put(String key, File value) {
-        try {
-            return put(key, Files.asByteSource(value).openStream(), false);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return false;
+        return put(key, value, false);
     }
 
     /**
@@ -222,12 +489,7 @@ public class Dyno {
      * @return true if value was put, false if otherwise
      */
     public boolean putIfAbsent(String key, File value) {
-        try {
-            return putIfAbsent(key, Files.asByteSource(value).openStream());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return false;
+        return put(key, value, true);
     }
 
     /**
@@ -238,12 +500,7 @@ public class Dyno {
      * @return true if value was put, false if otherwise
      */
     public boolean putIfAbsent(String key, byte[] value) {
-        try {
-            return putIfAbsent(key, ByteSource.wrap(value).openStream());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return false;
+        return put(key, value, true);
     }
 
     /**
@@ -257,8 +514,9 @@ public class Dyno {
     public boolean putIfAbsent(String key, Object value) {
         boolean result = false;
         try {
-            byte[] raw = toByteArray(value, (Class<Object>) value.getClass());
-            result = putIfAbsent(key, raw);
+            result = put(key, value, (Class<Object>) value.getClass(), true);
+        } catch (ThrottledException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -273,15 +531,111 @@ public class Dyno {
      */
     public boolean delete(String key) {
         try {
-            DeleteObjectRequest deleteObjectRequest = new DeleteObjectRequest(bucketName, key);
-            s3Client.deleteObject(deleteObjectRequest);
+            DeleteObjectRequest deleteObjectRequest = new DeleteObjectRequest(bucketName, objectKey(key));
+            call(key, () -> {
+                s3Client.deleteObject(deleteObjectRequest);
+                return null;
+            });
+            invalidate(key);
             return true;
+        } catch (ThrottledException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
         return false;
     }
 
+    /**
+     * Deletes values by keys, keys are deleted in multi-object delete batches
+     * sent concurrently up to the configured concurrency
+     *
+     * @param keys the keys of the values to delete
+     * @return the outcome of each key, in the iteration order of the given keys
+     */
+    public List<Result<Void>> deleteAll(Collection<Key> keys) {
+        List<List<Key>> batches = new ArrayList<>();
+        List<Key> batch = new ArrayList<>(Math.min(keys.size(), MAX_DELETE_BATCH));
+        for(Key key : keys) {
+            if(batch.size() == MAX_DELETE_BATCH) {
+                batches.add(batch);
+                batch = new ArrayList<>(MAX_DELETE_BATCH);
+            }
+            batch.add(key);
+        }
+        if(!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        List<Result<Void>> results = new ArrayList<>(keys.size());
+        for(List<Result<Void>> batchResults : fanOut(batches, concurrency, this::deleteBatch, this::failBatch)) {
+            results.addAll(batchResults);
+        }
+        return results;
+    }
+
+    /**
+     * Deletes all values whose key starts with the prefix.
+     * Each listed page of keys is deleted as a multi-object delete batch
+     * while the next page is listed. With hashed keys the shards are listed in turn.
+     *
+     * @param prefix the key prefix
+     * @return the number of keys deleted
+     */
+    public long deleteByPrefix(String prefix) {
+        if(prefix == null || prefix.isEmpty()) {
+            throw new IllegalArgumentException("prefix cannot be null or empty");
+        }
+        LongAdder deleted = new LongAdder();
+        Semaphore permits = new Semaphore(concurrency);
+        try {
+            for(String objectPrefix : objectPrefixes(prefix)) {
+                ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucketName)
+                        .withPrefix(objectPrefix)
+                        .withMaxKeys(MAX_DELETE_BATCH);
+                ListObjectsV2Result result;
+                do {
+                    result = listObjects(prefix, request);
+                    List<Key> batch = new ArrayList<>(result.getObjectSummaries().size());
+                    for(S3ObjectSummary objectSummary : result.getObjectSummaries()) {
+                        batch.add(new Key(this, logicalKey(objectSummary.getKey())));
+                    }
+                    if(!batch.isEmpty()) {
+                        permits.acquire();
+                        try {
+                            executor().execute(() -> {
+                                try {
+                                    for(Result<Void> deleteResult : deleteBatch(batch)) {
+                                        if(deleteResult.isOk()) {
+                                            deleted.increment();
+                                        }
+                                    }
+                                } catch (Exception e) {
+                                    e.printStackTrace();
+                                } finally {
+                                    permits.release();
+                                }
+                            });
+                        } catch (RejectedExecutionException e) {
+                            permits.release();
+                            e.printStackTrace();
+                        }
+                    }
+                    request.setContinuationToken(result.getNextContinuationToken());
+                } while (result.isTruncated());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return deleted.sum();
+        } catch (ThrottledException e) {
+            permits.acquireUninterruptibly(concurrency);
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        permits.acquireUninterruptibly(concurrency);
+        return deleted.sum();
+    }
+
     /**
      * Check if key exists
      *
@@ -289,8 +643,84 @@ public class Dyno {
      * @return true if key exists, false if otherwise
      */
     public boolean isExists(String key) {
-        ListObjectsV2Result result = s3Client.listObjectsV2(bucketName, key);
-        return result.getKeyCount() > 0;
+        if(isMissing(key)) {
+            return false;
+        }
+        boolean exists = call(key, () -> s3Client.doesObjectExist(bucketName, objectKey(key)));
+        if(!exists) {
+            markMissing(key);
+        }
+        return exists;
+    }
+
+    /**
+     * Check if keys exist, checks are sent concurrently
+     *
+     * @param keys the keys to check
+     * @return whether each key exists, in the iteration order of the given keys,
+     *         {@linkplain Result.Status#FAILED} for keys that could not be checked
+     */
+    public Map<Key, Result<Boolean>> existsAll(Collection<Key> keys) {
+        Map<Key, Future<Boolean>> futures = new LinkedHashMap<>();
+        for(Key key : keys) {
+            if(!futures.containsKey(key)) {
+                futures.put(key, isMissing(key.stringKey())
+                        ? CompletableFuture.completedFuture(false)
+                        : executor().submit(() -> isExists(key.stringKey())));
+            }
+        }
+        Map<Key, Result<Boolean>> result = new LinkedHashMap<>();
+        for(Map.Entry<Key, Future<Boolean>> entry : futures.entrySet()) {
+            Key key = entry.getKey();
+            try {
+                result.put(key, Result.ok(key, entry.getValue().get()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.put(key, Result.failed(key, e));
+            } catch (ExecutionException e) {
+                result.put(key, Result.failed(key, unwrap(e)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get values by keys, reads are sent concurrently up to the configured concurrency
+     *
+     * @param keys the keys of the values to get
+     * @param clazz class type of values
+     * @param <T> type of value
+     * @return the outcome of each key, in the iteration order of the given keys
+     */
+    public <T> List<Result<T>> getAll(Collection<Key> keys, Class<T> clazz) {
+        return getAll(keys, clazz, concurrency);
+    }
+
+    /**
+     * Get values by keys, each value is decoded as soon as its read completes
+     *
+     * @param keys the keys of the values to get
+     * @param clazz class type of values
+     * @param parallelism maximum number of reads in flight
+     * @param <T> type of value
+     * @return the outcome of each key, in the iteration order of the given keys,
+     *         {@linkplain Result.Status#NOT_FOUND} for keys that does not exists
+     *         and {@linkplain Result.Status#FAILED} for keys that could not be read
+     */
+    public <T> List<Result<T>> getAll(Collection<Key> keys, Class<T> clazz, int parallelism) {
+        boolean stream = streamingReads;
+        return fanOut(new ArrayList<>(keys), parallelism, key -> {
+            T value;
+            try {
+                value = read(key.stringKey(), clazz, stream, null);
+            } catch (AmazonS3Exception e) {
+                if(e.getStatusCode() == 404) {
+                    return Result.notFound(key);
+                }
+                throw e;
+            }
+            return value != null ? Result.ok(key, value) : Result.notFound(key);
+        }, Result::failed);
     }
 
     /**
@@ -300,14 +730,37 @@ public class Dyno {
      * @param file the {@linkplain File} to handle the value stream response
      */
     public void getFile(String key, File file) {
-        try {
-            OutputStream outputStream = new FileOutputStream(file);
-            get(key, outputStream);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            get(key, channel);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Get value into a {@linkplain FileChannel} from its current position.
+     * Values that are not cached locally are downloaded as concurrent byte ranges,
+     * each written at its offset in the channel.
+     *
+     * @param key the key of the value to get
+     * @param channel the channel to write into, positioned after the value when done
+     */
+    public void get(String key, FileChannel channel) {
+        try {
+            if(s3Client == null || isMissing(key)) {
+                return;
+            }
+            if(isCached(key) || !download(key, channel)) {
+                getStream(key, Channels.newOutputStream(channel), channel);
+            }
+        } catch (ThrottledException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Get value as {@linkplain String}
      *
@@ -490,151 +943,651 @@ public class Dyno {
     }
 
     public List<Key> listKeys(int maxKeys) {
-        List<Key> keys = new LinkedList<>();
-        if(s3Client != null) {
-            ListObjectsV2Request req  = new ListObjectsV2Request().withBucketName(bucketName).withMaxKeys(maxKeys);
-            ListObjectsV2Result result;
-            do {
-                result = s3Client.listObjectsV2(req);
-                for (S3ObjectSummary objectSummary : result.getObjectSummaries()) {
-                    keys.add(KeyBuilder.create(this).build(objectSummary.getKey()));
-                }
-            } while (result.isTruncated());
-        }
-        return keys;
+        return listKeys("", maxKeys);
     }
 
+    /**
+     * List keys with prefix. With hashed keys every shard is listed concurrently
+     * and the results are merged in key order.
+     *
+     * @param prefix the key prefix
+     * @param maxKeys maximum number of keys per listing request
+     * @return the keys
+     */
     public List<Key> listKeys(String prefix, int maxKeys) {
         List<Key> keys = new LinkedList<>();
         if(s3Client != null) {
-            ListObjectsV2Request req  = new ListObjectsV2Request().withBucketName(bucketName)
-                    .withPrefix(prefix)
-                    .withMaxKeys(maxKeys);
-            ListObjectsV2Result result;
-            do {
-                result = s3Client.listObjectsV2(req);
-                for (S3ObjectSummary objectSummary : result.getObjectSummaries()) {
-                    keys.add(KeyBuilder.create(this).build(objectSummary.getKey()));
-                }
-            } while (result.isTruncated());
+            if(!hashKeys) {
+                return listObjectKeys(prefix, prefix, maxKeys);
+            }
+            AtomicReference<Exception> error = new AtomicReference<>();
+            List<List<Key>> shards = fanOut(objectPrefixes(prefix), concurrency,
+                    objectPrefix -> listObjectKeys(prefix, objectPrefix, maxKeys),
+                    (objectPrefix, e) -> {
+                        error.compareAndSet(null, e);
+                        return Collections.emptyList();
+                    });
+            // A partial listing is not returned
+            if(error.get() instanceof RuntimeException) {
+                throw (RuntimeException) error.get();
+            } else if(error.get() != null) {
+                throw new AmazonClientException(error.get());
+            }
+            for(List<Key> shard : shards) {
+                keys.addAll(shard);
+            }
+            keys.sort(KeyOrder.KEYS);
         }
         return keys;
     }
 
     /**
-     * Get the associated {@linkplain KeyBuilder}
+     * Scan keys with prefix, see {@linkplain #scanKeys(String, int)}
      *
-     * @return the key builder
+     * @param prefix the key prefix
+     * @return lazy stream of the keys in key order
      */
-    public KeyBuilder getKeyBuilder() {
-        return new KeyBuilder(this);
+    public Stream<Key> scanKeys(String prefix) {
+        return scanKeys(prefix, MAX_LIST_PAGE);
     }
 
     /**
-     * Get the associated {@linkplain EntityBuilder}
+     * Scan keys with prefix. Keys are listed one page at a time as the stream is consumed,
+     * the next page is requested while the current page is consumed.
+     * Close the stream to stop a scan that was not consumed to the end.
      *
-     * @return the entity builder
+     * @param prefix the key prefix
+     * @param pageSize maximum number of keys per listing request
+     * @return lazy stream of the keys in key order
      */
-    public EntityBuilder getEntityBuilder() {
-        return new EntityBuilder(this);
+    public Stream<Key> scanKeys(String prefix, int pageSize) {
+        KeyScanner scanner = new KeyScanner(this, prefix, pageSize, executor());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scanner,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .onClose(scanner::close);
     }
 
-    public static String uuid() {
-        UUID uuid = UUID.randomUUID();
-        return uuid.toString();
+    /**
+     * Scan keys with prefix by listing partitions of the key space concurrently.
+     * The partitions are the common prefixes up to the next key spacing character after the prefix,
+     * they are discovered before this method returns. Keys without a further key spacing character
+     * are discovered along with the partitions and held in memory.
+     * Close the stream to stop a scan that was not consumed to the end.
+     *
+     * @param prefix the key prefix
+     * @param parallelism the number of partitions listed concurrently
+     * @param ordered true to return keys in key order, false to return keys as they are listed
+     * @return lazy stream of the keys
+     */
+    public Stream<Key> scanKeys(String prefix, int parallelism, boolean ordered) {
+        PartitionedKeyScanner scanner = new PartitionedKeyScanner(this, prefix, MAX_LIST_PAGE,
+                parallelism, ordered, executor());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scanner,
+                (ordered ? Spliterator.ORDERED : 0) | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .onClose(scanner::close);
     }
 
-    public static String sha256(String string) {
-        HashCode hashCode
-                = Hashing.sha256().hashString(string, Charset.defaultCharset());
-        return hashCode.toString();
+    /**
+     * List keys with prefix into a front coded key list, see {@linkplain FrontCodedKeyList}.
+     * Keys are scanned one page at a time, only the encoded keys are retained.
+     *
+     * @param prefix the key prefix
+     * @return the keys in key order
+     */
+    public FrontCodedKeyList listKeysCompact(String prefix) {
+        FrontCodedKeyList.Builder builder = FrontCodedKeyList.builder(this);
+        try(Stream<Key> keys = scanKeys(prefix)) {
+            keys.forEach(builder::add);
+        }
+        return builder.build();
     }
 
     /**
-     * Get key spacing character
+     * Scan the entities with prefix, reading up to the configured read-ahead of values
+     * ahead of the consumer, see {@linkplain #scanEntities(String, Class, int)}
      *
-     * @return key spacing character
+     * @param prefix the key prefix
+     * @param valueType the type of the values
+     * @param <T> value class type
+     * @return lazy stream of the entities in key order
      */
-    public String getKeySpace() {
-        return keySpace;
+    public <T> Stream<Entity<T>> scanEntities(String prefix, Class<T> valueType) {
+        return scanEntities(prefix, valueType, readAhead);
     }
 
     /**
-     * Get size of buffer
+     * Scan the entities with prefix. Keys are listed one page at a time as the stream is consumed,
+     * values are read and decoded on the executor, up to the given number of values ahead of the consumer.
+     * A value that cannot be read is returned as null, like the value of a deleted key.
+     * Close the stream to stop a scan that was not consumed to the end.
      *
-     * @return the configured buffer size
+     * @param prefix the key prefix
+     * @param valueType the type of the values
+     * @param readAhead the number of values read ahead of the consumer
+     * @param <T> value class type
+     * @return lazy stream of the entities in key order
      */
-    public Integer getBufferSize() {
-        return bufferSize;
+    public <T> Stream<Entity<T>> scanEntities(String prefix, Class<T> valueType, int readAhead) {
+        KeyScanner scanner = new KeyScanner(this, prefix, MAX_LIST_PAGE, executor());
+        return entities(scanner, valueType, readAhead);
     }
 
     /**
-     * Put {@linkplain InputStream} value if key does not exists
+     * Scan a key range, see {@linkplain #scan(String, String)}
      *
-     * @param key the string key to put
-     * @param value the {@linkplain InputStream} value to put
-     * @return true if value was put, false if otherwise
+     * @param startKey the first key of the range, inclusive
+     * @param endKey the end of the range, exclusive
+     * @return lazy stream of the entities in key order, without values
      */
-    public boolean putIfAbsent(String key, InputStream value) {
-        validateInputs(key, value);
-
-        return put(key, value, true);
+    public Stream<Entity> scan(Key startKey, Key endKey) {
+        return scan(startKey != null ? startKey.stringKey() : null, endKey != null ? endKey.stringKey() : null);
     }
 
-    public boolean put(String key, InputStream value) {
-        validateInputs(key, value);
-
-        return put(key, value, false);
+    /**
+     * Scan a key range. Listing starts at the lower bound and stops at the upper bound,
+     * only the keys sharing the common prefix of both bounds are listed.
+     * Close the stream to stop a scan that was not consumed to the end.
+     *
+     * @param startKey the first key of the range, inclusive, null to start with the first key
+     * @param endKey the end of the range, exclusive, null to end with the last key
+     * @return lazy stream of the entities in key order, without values
+     */
+    public Stream<Entity> scan(String startKey, String endKey) {
+        KeyScanner scanner = newRangeScanner(startKey, endKey);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scanner,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .onClose(scanner::close)
+                .map(key -> EntityBuilder.create(this).build(key.stringKey(), null, null));
     }
 
     /**
-     * Put {@linkplain InputStream} value
+     * Scan a key range and read the values, see {@linkplain #scan(String, String, Class, int)}
      *
-     * @param key the unique identifier to store the {@linkplain InputStream}
-     * @param value the {@linkplain InputStream} value to put
-     * @return true if {@linkplain InputStream} was stored successfully, false otherwise
+     * @param startKey the first key of the range, inclusive
+     * @param endKey the end of the range, exclusive
+     * @param valueType the type of the values
+     * @param readAhead the number of values read ahead of the consumer
+     * @param <T> value class type
+     * @return lazy stream of the entities in key order
      */
-    public boolean put(String key, InputStream value, boolean putIfAbsent) {
-        validateInputs(key, value);
+    public <T> Stream<Entity<T>> scan(Key startKey, Key endKey, Class<T> valueType, int readAhead) {
+        return scan(startKey != null ? startKey.stringKey() : null, endKey != null ? endKey.stringKey() : null,
+                valueType, readAhead);
+    }
 
-        if(bucketName == null) {
-            throw new IllegalArgumentException("bucketName cannot be null");
-        }
+    /**
+     * Scan a key range and read the values. Values are read and decoded on the executor,
+     * up to the given number of values ahead of the consumer.
+     * A value that cannot be read is returned as null, like the value of a deleted key.
+     * Close the stream to stop a scan that was not consumed to the end.
+     *
+     * @param startKey the first key of the range, inclusive, null to start with the first key
+     * @param endKey the end of the range, exclusive, null to end with the last key
+     * @param valueType the type of the values
+     * @param readAhead the number of values read ahead of the consumer
+     * @param <T> value class type
+     * @return lazy stream of the entities in key order
+     */
+    public <T> Stream<Entity<T>> scan(String startKey, String endKey, Class<T> valueType, int readAhead) {
+        return entities(newRangeScanner(startKey, endKey), valueType, readAhead);
+    }
 
-        if (putIfAbsent && isExists(key)) {
-            return false;
+    private <T> Stream<Entity<T>> entities(KeyScanner scanner, Class<T> valueType, int readAhead) {
+        EntityPrefetcher<T> prefetcher;
+        try {
+            prefetcher = new EntityPrefetcher<>(this, scanner, scanner, valueType, readAhead, executor());
+        } catch (IllegalArgumentException e) {
+            scanner.close();
+            throw e;
         }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(prefetcher,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(prefetcher::close);
+    }
 
-        if(s3Client == null) {
-            throw new IllegalStateException("S3 client is not initialized");
+    private KeyScanner newRangeScanner(String startKey, String endKey) {
+        if(startKey != null && endKey != null && KeyOrder.compare(startKey, endKey) > 0) {
+            throw new IllegalArgumentException("startKey cannot be after endKey");
         }
-
-        ObjectMetadata metadata = new ObjectMetadata();
-        metadata.setContentType("application/octet-stream");
-        metadata.setContentLength(calculateInputStreamLength(value));
-        PutObjectRequest request = new PutObjectRequest(bucketName, key, value, metadata);
-        request.setMetadata(metadata);
-        PutObjectResult result = s3Client.putObject(request);
-        return result != null;
+        String prefix = startKey != null && endKey != null ? Strings.commonPrefix(startKey, endKey) : "";
+        return new KeyScanner(this, prefix, startKey, endKey, MAX_LIST_PAGE, executor());
     }
 
     /**
-     * Get value as byte array by key
+     * List the keys of the objects with the physical prefix
      *
-     * @param key the key string to get
-     * @return value as byte array
+     * @param prefix the logical key prefix
+     * @param objectPrefix the object key prefix
+     * @param maxKeys maximum number of keys per listing request
+     * @return the logical keys
      */
-    public byte[] getByte(String key) {
+    private List<Key> listObjectKeys(String prefix, String objectPrefix, int maxKeys) {
+        List<Key> keys = new LinkedList<>();
+        ListObjectsV2Request req  = new ListObjectsV2Request()
+                .withPrefix(objectPrefix)
+                .withMaxKeys(maxKeys);
+        ListObjectsV2Result result;
+        do {
+            result = listObjects(prefix, req);
+            for (S3ObjectSummary objectSummary : result.getObjectSummaries()) {
+                keys.add(new Key(this, logicalKey(objectSummary.getKey())));
+            }
+            req.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+        return keys;
+    }
+
+    /**
+     * Send a listing request for the bucket of this instance
+     *
+     * @param prefix the logical key prefix of the request
+     * @param request the listing request
+     * @return the listing page
+     */
+    ListObjectsV2Result listObjects(String prefix, ListObjectsV2Request request) {
+        return call(prefix, () -> s3Client.listObjectsV2(request.withBucketName(bucketName)));
+    }
+
+    /**
+     * Get the object key of a key. With hashed keys the object key is prefixed
+     * with a shard derived from the hash of the key, so that keys sharing a prefix
+     * are spread across the partitions of the bucket.
+     *
+     * @param key the key
+     * @return the object key
+     */
+    String objectKey(String key) {
+        if(!hashKeys) {
+            return key;
+        }
+        int shard = Math.floorMod(Hashing.murmur3_32().hashString(key, StandardCharsets.UTF_8).asInt(), KEY_SHARDS);
+        return Integer.toHexString(shard) + SHARD_SEPARATOR + key;
+    }
+
+    /**
+     * Get the key of an object key
+     *
+     * @param objectKey the object key
+     * @return the key
+     */
+    String logicalKey(String objectKey) {
+        return hashKeys ? objectKey.substring(objectKey.indexOf(SHARD_SEPARATOR) + 1) : objectKey;
+    }
+
+    /**
+     * Get the object key prefixes of a key prefix, one for each shard with hashed keys
+     *
+     * @param prefix the key prefix
+     * @return the object key prefixes
+     */
+    List<String> objectPrefixes(String prefix) {
+        if(!hashKeys) {
+            return Collections.singletonList(prefix);
+        }
+        List<String> prefixes = new ArrayList<>(KEY_SHARDS);
+        for(int shard = 0; shard < KEY_SHARDS; shard++) {
+            prefixes.add(Integer.toHexString(shard) + SHARD_SEPARATOR + prefix);
+        }
+        return prefixes;
+    }
+
+    /**
+     * Get the associated {@linkplain KeyBuilder}
+     *
+     * @return the key builder
+     */
+    public KeyBuilder getKeyBuilder() {
+        return new KeyBuilder(this);
+    }
+
+    /**
+     * Get the associated {@linkplain EntityBuilder}
+     *
+     * @return the entity builder
+     */
+    public EntityBuilder getEntityBuilder() {
+        return new EntityBuilder(this);
+    }
+
+    public static String uuid() {
+        UUID uuid = UUID.randomUUID();
+        return uuid.toString();
+    }
+
+    public static String sha256(String string) {
+        HashCode hashCode
+                = Hashing.sha256().hashString(string, Charset.defaultCharset());
+        return hashCode.toString();
+    }
+
+    /**
+     * Get the value cache statistics
+     *
+     * @return snapshot of the cache statistics, all zero if the cache is not enabled
+     */
+    public CacheStats getCacheStats() {
+        if(valueCache == null) {
+            return new CacheStats(0, 0, 0, 0, 0, revalidations.sum(), notModified.sum(), diskHits.sum());
+        }
+        CacheStats stats = valueCache.stats();
+        return new CacheStats(stats.getHitCount(), stats.getMissCount(), stats.getEvictionCount(),
+                stats.getSize(), stats.getWeight(), revalidations.sum(), notModified.sum(), diskHits.sum());
+    }
+
+    /**
+     * Get key spacing character
+     *
+     * @return key spacing character
+     */
+    public String getKeySpace() {
+        return keySpace;
+    }
+
+    /**
+     * Get size of buffer
+     *
+     * @return the configured buffer size
+     */
+    public Integer getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Put {@linkplain InputStream} value if key does not exists
+     *
+     * @param key the string key to put
+     * @param value the {@linkplain InputStream} value to put
+     * @return true if value was put, false if otherwise
+     */
+    public boolean putIfAbsent(String key, InputStream value) {
+        validateInputs(key, value);
+
+        return put(key, value, true);
+    }
+
+    public boolean put(String key, InputStream value) {
+        validateInputs(key, value);
+
+        return put(key, value, false);
+    }
+
+    /**
+     * Put {@linkplain InputStream} value
+     *
+     * @param key the unique identifier to store the {@linkplain InputStream}
+     * @param value the {@linkplain InputStream} value to put
+     * @return true if {@linkplain InputStream} was stored successfully, false otherwise
+     */
+    public boolean put(String key, InputStream value, boolean putIfAbsent) {
+        validateInputs(key, value);
+        int partSize = multipartUploader.partSize();
+        try (BufferOutputStream firstPart = new BufferOutputStream(bufferPool, bufferSize)) {
+            ByteStreams.copy(ByteStreams.limit(value, partSize), firstPart);
+            if(firstPart.size() < partSize) {
+                return put(key, firstPart.toByteSource(), newMetadata(firstPart.size()), putIfAbsent);
+            }
+            if(putIfAbsent) {
+                return writeIfAbsent(key, false, ifNoneMatch -> uploadParts(key,
+                        () -> multipartUploader.upload(key, firstPart.array(), value, newMetadata(-1),
+                                ifNoneMatch, executor())));
+            }
+            return uploadParts(key, () -> multipartUploader.upload(key, firstPart.array(), value,
+                    newMetadata(-1), false, executor()));
+        } catch (ThrottledException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Put {@linkplain File} value, files larger than a part are uploaded in parts
+     *
+     * @param key the string key to put
+     * @param value the {@linkplain File} value to put
+     * @param putIfAbsent true to put only if key does not exists
+     * @return true if value was put, false if otherwise
+     */
+    private boolean put(String key, File value, boolean putIfAbsent) {
+        long length = value.length();
+        try {
+            if(length <= multipartUploader.partSize()) {
+                return put(key, Files.asByteSource(value), newMetadata(length), putIfAbsent);
+            }
+            if(putIfAbsent) {
+                return writeIfAbsent(key, true, ifNoneMatch -> uploadParts(key,
+                        () -> multipartUploader.upload(key, value, newMetadata(-1), ifNoneMatch, executor())));
+            }
+            return uploadParts(key, () -> multipartUploader.upload(key, value, newMetadata(-1),
+                    false, executor()));
+        } catch (ThrottledException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Put value with object metadata
+     *
+     * @param key the unique identifier to store the value
+     * @param value the value bytes, opened for each request
+     * @param metadata the object metadata, including the content length
+     * @param putIfAbsent true to put only if key does not exists
+     * @return true if value was stored successfully, false otherwise
+     * @throws IOException if value cannot be read
+     */
+    private boolean put(String key, ByteSource value, ObjectMetadata metadata, boolean putIfAbsent) throws IOException {
+        if(key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Key and/or value cannot be empty or null");
+        }
+
+        if(bucketName == null) {
+            throw new IllegalArgumentException("bucketName cannot be null");
+        }
+
+        if(s3Client == null) {
+            throw new IllegalStateException("S3 client is not initialized");
+        }
+
+        if(putIfAbsent) {
+            return writeIfAbsent(key, true, ifNoneMatch -> putObject(key, value, metadata, ifNoneMatch));
+        }
+        return putObject(key, value, metadata, false);
+    }
+
+    /**
+     * Put value bytes, retrying transient failures with the value opened again for each attempt
+     *
+     * @param key the string key of the value
+     * @param value the value bytes
+     * @param metadata the object metadata, including the content length
+     * @param ifNoneMatch true to put only if key does not exists
+     * @return true if value was put
+     * @throws IOException if value cannot be read
+     */
+    private boolean putObject(String key, ByteSource value, ObjectMetadata metadata,
+                              boolean ifNoneMatch) throws IOException {
+        invalidate(key);
+        PutObjectResult result;
+        try {
+            result = call(key, () -> {
+                try (InputStream inputStream = value.openStream()) {
+                    PutObjectRequest request = new PutObjectRequest(bucketName, objectKey(key), inputStream, metadata);
+                    request.setMetadata(metadata);
+                    if(ifNoneMatch) {
+                        request.putCustomRequestHeader(IF_NONE_MATCH, "*");
+                    }
+                    return s3Client.putObject(request);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        invalidate(key);
+        return result != null;
+    }
+
+    /**
+     * Upload a value in parts
+     *
+     * @param key the string key of the value
+     * @param upload uploads the parts
+     * @return true when the upload completed
+     * @throws IOException if the upload failed
+     */
+    private boolean uploadParts(String key, Upload upload) throws IOException {
+        invalidate(key);
+        try {
+            upload.upload();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            invalidate(key);
+        }
+        return true;
+    }
+
+    /**
+     * Write a value only if its key does not exists.
+     * Where the backend supports conditional writes the value is written with
+     * {@code If-None-Match: *} in a single request, which fails if the key exists.
+     * Otherwise the key is checked and the value written while holding the {@linkplain KeyLock} of the key.
+     *
+     * @param key the string key of the value
+     * @param repeatable true if the write can be sent again when the backend does not support conditional writes
+     * @param write writes the value, conditionally if its argument is true
+     * @return true if value was written, false if the key exists
+     * @throws IOException if value cannot be written
+     */
+    private boolean writeIfAbsent(String key, boolean repeatable, Write write) throws IOException {
+        Boolean conditional = conditionalWrites;
+        // Writes that cannot be repeated are only sent conditionally once support is known
+        if(conditional == Boolean.TRUE || (conditional == null && repeatable)) {
+            try {
+                boolean written = write.write(true);
+                conditionalWrites = Boolean.TRUE;
+                return written;
+            } catch (AmazonServiceException e) {
+                if(isConditionFailed(e)) {
+                    conditionalWrites = Boolean.TRUE;
+                    return false;
+                }
+                if(!isNotImplemented(e)) {
+                    throw e;
+                }
+                conditionalWrites = Boolean.FALSE;
+                if(!repeatable) {
+                    throw e;
+                }
+            }
+        }
+        try (KeyLock.Lease lease = keyLock.acquire(key)) {
+            // The negative cache is bypassed, other processes may have written the key
+            if(call(key, () -> s3Client.doesObjectExist(bucketName, objectKey(key)))) {
+                return false;
+            }
+            return write.write(false);
+        }
+    }
+
+    /**
+     * Check if a conditional write failed because the key exists,
+     * or because a concurrent conditional write of the key is in progress
+     */
+    private static boolean isConditionFailed(AmazonServiceException e) {
+        return e.getStatusCode() == 412 || e.getStatusCode() == 409;
+    }
+
+    private static boolean isNotImplemented(AmazonServiceException e) {
+        return e.getStatusCode() == 501 || "NotImplemented".equals(e.getErrorCode());
+    }
+
+    /**
+     * Writes a value
+     */
+    @FunctionalInterface
+    private interface Write {
+        boolean write(boolean ifNoneMatch) throws IOException;
+    }
+
+    /**
+     * Uploads the parts of a value
+     */
+    @FunctionalInterface
+    private interface Upload {
+        void upload() throws Exception;
+    }
+
+    /**
+     * Put value bytes, compressed if compression is configured and worthwhile
+     *
+     * @param key the string key to put
+     * @param bytes the value bytes
+     * @param length the number of value bytes
+     * @param type the value type
+     * @param putIfAbsent true to put only if key does not exists
+     * @return true if value was put, false if otherwise
+     * @throws IOException if value cannot be compressed
+     */
+    private boolean put(String key, byte[] bytes, int length, Class<?> type, boolean putIfAbsent) throws IOException {
+        ObjectMetadata metadata = newMetadata(length);
+        if(compressor != null) {
+            try (BufferOutputStream compressed = compressor.compress(type, bytes, length)) {
+                if(compressed != null) {
+                    metadata.setContentLength(compressed.size());
+                    compressor.describe(metadata, length);
+                    return put(key, compressed.toByteSource(), metadata, putIfAbsent);
+                }
+            }
+        }
+        return put(key, ByteSource.wrap(bytes).slice(0, length), metadata, putIfAbsent);
+    }
+
+    private ObjectMetadata newMetadata(long contentLength) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType("application/octet-stream");
+        if(contentLength >= 0) {
+            metadata.setContentLength(contentLength);
+        }
+        return metadata;
+    }
+
+    /**
+     * Get value as byte array by key
+     *
+     * @param key the key string to get
+     * @return value as byte array
+     */
+    public byte[] getByte(String key) {
         byte[] result = null;
         try {
             if(s3Client != null) {
-                GetObjectRequest request = new GetObjectRequest(bucketName, key);
-                S3Object s3Object = s3Client.getObject(request);
-                if(s3Object != null) {
-                    InputStream inputStream = s3Object.getObjectContent();
-                    result = ByteStreams.toByteArray(inputStream);
+                if(valueCache != null) {
+                    CachedValue cached = load(key);
+                    result = cached != null ? cached.copy() : null;
+                } else if(readFlight != null) {
+                    result = readFlight.execute(flightKey(key), () -> fetchBuffer(key), Dyno::toArray,
+                            bufferPool::release);
+                } else {
+                    GetObjectRequest request = new GetObjectRequest(bucketName, objectKey(key));
+                    S3Object s3Object = getObject(key, request);
+                    if(s3Object != null) {
+                        ObjectMetadata metadata = s3Object.getObjectMetadata();
+                        try (InputStream inputStream = Compressor.decompress(metadata, s3Object.getObjectContent())) {
+                            result = readBytes(inputStream, Compressor.length(metadata));
+                        }
+                    }
                 }
             }
+        } catch (ThrottledException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -646,65 +1599,1114 @@ public class Dyno {
      *
      * @param key string key to get
      * @param outputStream stream to handle response from S3 service
+     * @param channel channel of the output stream, used to transfer cached segments
      */
-    private void getStream(String key, OutputStream outputStream) {
+    private void getStream(String key, OutputStream outputStream, WritableByteChannel channel) {
         try {
             if(s3Client != null) {
-                GetObjectRequest request = new GetObjectRequest(bucketName, key);
-                S3Object s3Object = s3Client.getObject(request);
-                InputStream inputStream = s3Object.getObjectContent();
-                byte[] buf = new byte[bufferSize != null ? bufferSize : DynoClientBuilder.DEFAULT_BUFFER_SIZE];
-                int numRead;
-                while ( (numRead = inputStream.read(buf) ) >= 0) {
-                    outputStream.write(buf, 0, numRead);
+                CachedValue cached = valueCache != null ? valueCache.get(key) : null;
+                if(cached != null && isStale(key, cached)) {
+                    cached = fetch(key, cached);
+                }
+                if(cached != null) {
+                    ByteBuffer buffer = cached.buffer();
+                    outputStream.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+                    return;
+                }
+                long generation = generation(key);
+                GetObjectRequest request = new GetObjectRequest(bucketName, objectKey(key));
+                DiskCache.Entry entry = diskCache != null ? diskCache.get(key) : null;
+                if(entry != null) {
+                    if(!isStale(key, entry) && diskCache.transferTo(entry, channel)) {
+                        diskHits.increment();
+                        return;
+                    }
+                    if(entry.eTag != null) {
+                        request.withNonmatchingETagConstraint(entry.eTag);
+                    }
+                }
+                S3Object s3Object = getObject(key, request);
+                if(s3Object == null && entry != null) {
+                    entry.validated();
+                    if(diskCache.transferTo(entry, channel)) {
+                        diskHits.increment();
+                        return;
+                    }
+                    s3Object = getObject(key, new GetObjectRequest(bucketName, objectKey(key)));
+                }
+                ObjectMetadata metadata = s3Object.getObjectMetadata();
+                try (InputStream inputStream = Compressor.decompress(metadata, s3Object.getObjectContent())) {
+                    long length = Compressor.length(metadata);
+                    if(diskCache != null && diskCache.fits(length)) {
+                        transferTo(key, diskCache.put(key, inputStream, length, metadata.getETag()), channel, generation);
+                        return;
+                    }
+                    byte[] buf = new byte[bufferSize != null ? bufferSize : DynoClientBuilder.DEFAULT_BUFFER_SIZE];
+                    int numRead;
+                    while ( (numRead = inputStream.read(buf) ) >= 0) {
+                        outputStream.write(buf, 0, numRead);
+                    }
                 }
             }
+        } catch (ThrottledException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private void validateInputs(String key, InputStream value) {
-        if(value == null || key == null || key.isEmpty()) {
-            throw new IllegalArgumentException("Key and/or value cannot be empty or null");
+    /**
+     * Download an object as concurrent byte ranges, each written at its offset in the channel.
+     * The first range also reads the object length and ETag,
+     * further ranges are only accepted if the object was not modified meanwhile.
+     * Objects that fit the disk cache are downloaded into a cache segment first
+     * and then transferred into the channel.
+     *
+     * @param key string key to get
+     * @param channel the channel to write into from its current position
+     * @return true if the object was downloaded, false if it is compressed and must be read as a whole
+     * @throws Exception if the object cannot be downloaded
+     */
+    private boolean download(String key, FileChannel channel) throws Exception {
+        long base = channel.position();
+        long generation = generation(key);
+        S3Object first;
+        try {
+            first = getObject(key, new GetObjectRequest(bucketName, objectKey(key)).withRange(0, rangePartSize - 1));
+        } catch (AmazonS3Exception e) {
+            if(e.getStatusCode() == 416) {
+                // Empty object, no range can be satisfied
+                return true;
+            }
+            throw e;
+        }
+        try {
+            ObjectMetadata metadata = first.getObjectMetadata();
+            long length = metadata.getInstanceLength();
+            if(metadata.getContentRange() == null || Compressor.isCompressed(metadata)) {
+                if(length > metadata.getContentLength()) {
+                    first.getObjectContent().abort();
+                    return false;
+                }
+                try (InputStream inputStream = Compressor.decompress(metadata, first.getObjectContent())) {
+                    long decodedLength = Compressor.length(metadata);
+                    if(diskCache != null && diskCache.fits(decodedLength)) {
+                        transferTo(key, diskCache.put(key, inputStream, decodedLength, metadata.getETag()),
+                                channel, generation);
+                        return true;
+                    }
+                    channel.position(base + write(inputStream, channel, base));
+                }
+                return true;
+            }
+            if(diskCache != null && diskCache.fits(length)) {
+                Path temp = diskCache.createTemp();
+                try {
+                    try (FileChannel segment = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                        downloadRanges(key, first, length, segment, 0);
+                        segment.force(false);
+                    }
+                    transferTo(key, diskCache.commit(key, temp, length, metadata.getETag()), channel, generation);
+                } finally {
+                    java.nio.file.Files.deleteIfExists(temp);
+                }
+                return true;
+            }
+            downloadRanges(key, first, length, channel, base);
+            channel.position(base + length);
+            return true;
+        } finally {
+            first.close();
         }
     }
 
     /**
-     * Check if class is a Java primitive type
+     * Transfer a newly stored disk cache segment into a channel,
+     * the segment is dropped if the key was invalidated since its object was read
      *
-     * @param clazz the class to check
-     * @return true if class is primitive, false if class is not primitive
+     * @param generation the invalidation generation of the key before its object was read
+     * @throws IOException if the segment was not stored or was evicted before it was read
      */
-    private boolean isPrimitive(Class clazz) {
-        if(clazz.equals(String.class)
-                || clazz.equals(Number.class)
-                || clazz.equals(Short.class)
-                || clazz.equals(Long.class)
-                || clazz.equals(Double.class)
-                || clazz.equals(Float.class)
-                || clazz.equals(Integer.class)
-                || clazz.equals(Boolean.class)
-        ) {
-           return true;
+    private void transferTo(String key, DiskCache.Entry stored, WritableByteChannel channel,
+                            long generation) throws IOException {
+        if(stored == null || !diskCache.transferTo(stored, channel)) {
+            throw new IOException("Cached segment of " + key + " was evicted before it was read");
+        }
+        if(generation(key) != generation) {
+            diskCache.invalidate(key);
         }
-        return false;
     }
 
-    private <T> byte[] toByteArray(T value, Class<T> clazz) {
-        MessagePack msgpack = new MessagePack();
-        if(!isPrimitive(clazz)) {
-            msgpack.register(clazz);
+    /**
+     * Download the ranges of an object concurrently, each written at its offset in the channel
+     *
+     * @param key string key to get
+     * @param first the response of the first range, with the object length and ETag
+     * @param length the object length
+     * @param channel the channel to write into
+     * @param base the channel position of the first byte
+     * @throws Exception if a range cannot be downloaded
+     */
+    private void downloadRanges(String key, S3Object first, long length, FileChannel channel,
+                                long base) throws Exception {
+        String eTag = first.getObjectMetadata().getETag();
+        List<long[]> ranges = new ArrayList<>();
+        for(long offset = 0; offset < length; offset += rangePartSize) {
+            ranges.add(new long[] { offset, Math.min(offset + rangePartSize, length) - 1 });
         }
+        List<Exception> errors = fanOut(ranges, rangeParallelism, range -> {
+            S3Object s3Object = first;
+            if(range[0] > 0) {
+                GetObjectRequest request = new GetObjectRequest(bucketName, objectKey(key)).withRange(range[0], range[1]);
+                if(eTag != null) {
+                    request.withMatchingETagConstraint(eTag);
+                }
+                s3Object = getObject(key, request);
+                if(s3Object == null) {
+                    throw new IOException("Object " + key + " was modified during download");
+                }
+            }
+            try (InputStream inputStream = s3Object.getObjectContent()) {
+                long written = write(inputStream, channel, base + range[0]);
+                if(written != range[1] - range[0] + 1) {
+                    throw new IOException("Range " + range[0] + "-" + range[1] + " of " + key + " was truncated");
+                }
+            }
+            return null;
+        }, (range, e) -> e);
+        for(Exception error : errors) {
+            if(error != null) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Write a stream into a channel with positional writes
+     *
+     * @param inputStream the stream to read
+     * @param channel the channel to write into
+     * @param position the channel position of the first byte
+     * @return the number of bytes written
+     * @throws IOException if stream cannot be read or channel cannot be written
+     */
+    private long write(InputStream inputStream, FileChannel channel, long position) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(inputStream);
+        ByteBuffer chunk = bufferPool.acquire(RANGE_CHUNK_SIZE);
         try {
-            byte[] raw = msgpack.write(value);
-            return raw;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            long written = 0;
+            while(source.read(chunk) >= 0) {
+                chunk.flip();
+                while(chunk.hasRemaining()) {
+                    written += channel.write(chunk, position + written);
+                }
+                chunk.clear();
+            }
+            return written;
+        } finally {
+            bufferPool.release(chunk);
         }
     }
 
-    // Create a method that calculates InputStream length without consuming it
+    /**
+     * Check if a key is cached locally, its value is then read from the cache instead of downloaded
+     *
+     * @param key string key to check
+     * @return true if the value or disk cache has the key, false if otherwise
+     */
+    private boolean isCached(String key) {
+        return (valueCache != null && valueCache.peek(key) != null)
+                || (diskCache != null && diskCache.get(key) != null);
+    }
+
+    private static WritableByteChannel channel(OutputStream outputStream) {
+        if(outputStream instanceof FileOutputStream) {
+            return ((FileOutputStream) outputStream).getChannel();
+        }
+        return Channels.newChannel(outputStream);
+    }
+
+    private void validateInputs(String key, InputStream value) {
+        if(value == null || key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Key and/or value cannot be empty or null");
+        }
+    }
+
+    /**
+     * Encode value with the codec of its type and put it by key
+     *
+     * @param key string key of the value to put
+     * @param value typed value to put
+     * @param clazz type of value
+     * @param putIfAbsent true to put only if key does not exists
+     * @param <T> class type
+     * @return true if value was put, false if otherwise
+     * @throws IOException if value cannot be encoded
+     */
+    private <T> boolean put(String key, T value, Class<T> clazz, boolean putIfAbsent) throws IOException {
+        try (BufferOutputStream outputStream = new BufferOutputStream(bufferPool, bufferSize)) {
+            codecRegistry.codec(clazz).encode(value, outputStream);
+            return put(key, outputStream.array(), outputStream.size(), clazz, putIfAbsent);
+        }
+    }
+
+    /**
+     * Put the value of an entity, encoded into a pooled buffer
+     *
+     * @param entity the entity to put
+     * @param putIfAbsent true to put only if key does not exists
+     * @param <T> class type
+     * @return true if value was put, false if otherwise
+     * @throws IOException if value cannot be encoded
+     */
+    private <T> boolean put(Entity<T> entity, boolean putIfAbsent) throws IOException {
+        return put(entity.getKeyString(), entity.getValue(), entity.getValueType(), putIfAbsent);
+    }
+
+    /**
+     * Get value by key and decode it with the codec of its type.
+     * When streaming, the value is decoded directly from the object stream
+     * through a read buffer capped to the configured buffer size.
+     *
+     * @param key the string key of value to get
+     * @param clazz class type of value
+     * @param stream true to decode directly from the object stream
+     * @param sizeListener receives the number of bytes decoded, may be null
+     * @param <T> type of value
+     * @return the value
+     * @throws IOException if value cannot be read or decoded
+     */
+    private <T> T read(String key, Class<T> clazz, boolean stream, LongConsumer sizeListener) throws IOException {
+        if(s3Client == null || isMissing(key)) {
+            return null;
+        }
+        if(valueCache != null) {
+            CachedValue cached = stream ? valueCache.get(key) : load(key);
+            if(stream && cached != null && isStale(key, cached)) {
+                cached = fetch(key, cached);
+            }
+            if(cached != null) {
+                T value = codecRegistry.codec(clazz).decode(cached.buffer());
+                if(sizeListener != null) {
+                    sizeListener.accept(cached.length());
+                }
+                return value;
+            }
+            if(!stream) {
+                return null;
+            }
+        } else if(!stream && readFlight != null) {
+            ValueCodec<T> codec = codecRegistry.codec(clazz);
+            return readFlight.execute(flightKey(key), () -> fetchBuffer(key), buffer -> {
+                T value = codec.decode(buffer.duplicate());
+                if(sizeListener != null) {
+                    sizeListener.accept(buffer.remaining());
+                }
+                return value;
+            }, bufferPool::release);
+        }
+        GetObjectRequest request = new GetObjectRequest(bucketName, objectKey(key));
+        S3Object s3Object = getObject(key, request);
+        if(s3Object == null) {
+            return null;
+        }
+        ObjectMetadata metadata = s3Object.getObjectMetadata();
+        try (InputStream inputStream = Compressor.decompress(metadata, s3Object.getObjectContent())) {
+            ValueCodec<T> codec = codecRegistry.codec(clazz);
+            long contentLength = Compressor.length(metadata);
+            if(stream || contentLength < 0 || contentLength > Integer.MAX_VALUE) {
+                int readBufferSize = contentLength > 0 ? (int) Math.min(contentLength, bufferSize) : bufferSize;
+                CountingInputStream countingStream
+                        = new CountingInputStream(new BufferedInputStream(inputStream, readBufferSize));
+                T value = codec.decode(countingStream);
+                if(sizeListener != null) {
+                    sizeListener.accept(countingStream.getCount());
+                }
+                return value;
+            }
+            ByteBuffer buffer = bufferPool.acquire((int) contentLength);
+            try {
+                ByteStreams.readFully(inputStream, buffer.array(), buffer.arrayOffset(), (int) contentLength);
+                buffer.limit((int) contentLength);
+                T value = codec.decode(buffer);
+                if(sizeListener != null) {
+                    sizeListener.accept(contentLength);
+                }
+                return value;
+            } finally {
+                bufferPool.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Set whether values are decoded directly from the object stream by default
+     *
+     * @param streamingReads true to decode from the object stream
+     */
+    void setStreamingReads(boolean streamingReads) {
+        this.streamingReads = streamingReads;
+    }
+
+    /**
+     * Set the value compressor
+     *
+     * @param compressor the compressor, null to store values uncompressed
+     */
+    void setCompressor(Compressor compressor) {
+        this.compressor = compressor;
+    }
+
+    BufferPool bufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Get value bytes from the value cache,
+     * or read them from the datastore and cache them
+     *
+     * @param key the string key of value to get
+     * @return the cached value, null if key does not exists
+     * @throws IOException if value cannot be read
+     */
+    private CachedValue load(String key) throws IOException {
+        CachedValue cached = valueCache.get(key);
+        if(cached != null && !isStale(key, cached)) {
+            return cached;
+        }
+        if(cached == null && diskCache != null) {
+            long generation = generation(key);
+            DiskCache.Entry entry = diskCache.get(key);
+            if(entry != null && !isStale(key, entry.validatedAt())) {
+                byte[] bytes = diskCache.read(entry);
+                if(bytes != null) {
+                    CachedValue stored = new CachedValue(bytes, entry.eTag, entry.validatedAt());
+                    if(!entry.isValidated()) {
+                        // Replayed after a restart, served only if the object did not change
+                        cached = fetch(key, stored);
+                        if(cached != stored) {
+                            diskCache.invalidate(entry);
+                            return cached;
+                        }
+                        entry.validated();
+                    }
+                    diskHits.increment();
+                    cache(key, stored, generation);
+                    return stored;
+                }
+            }
+        }
+        return fetch(key, cached);
+    }
+
+    /**
+     * Read value bytes from the datastore and cache them.
+     * If a cached value is given the read is conditional on its ETag,
+     * an unmodified object is not downloaded again.
+     * Concurrent reads of the same key share a single request.
+     *
+     * @param key the string key of value to get
+     * @param cached the cached value to revalidate, may be null
+     * @return the cached value, null if key does not exists
+     * @throws IOException if value cannot be read
+     */
+    private CachedValue fetch(String key, CachedValue cached) throws IOException {
+        if(singleFlight == null) {
+            return fetchObject(key, cached);
+        }
+        return singleFlight.execute(flightKey(key), () -> fetchObject(key, cached));
+    }
+
+    /**
+     * Read value bytes from the datastore into a pooled buffer, without caching them
+     *
+     * @param key the string key of value to get
+     * @return the buffer, from position zero to the end of the value
+     * @throws IOException if value cannot be read
+     */
+    private ByteBuffer fetchBuffer(String key) throws IOException {
+        S3Object s3Object = getObject(key, new GetObjectRequest(bucketName, objectKey(key)));
+        ObjectMetadata metadata = s3Object.getObjectMetadata();
+        try (InputStream inputStream = Compressor.decompress(metadata, s3Object.getObjectContent())) {
+            long length = Compressor.length(metadata);
+            if(length < 0 || length > Integer.MAX_VALUE) {
+                return ByteBuffer.wrap(readBytes(inputStream, length));
+            }
+            ByteBuffer buffer = bufferPool.acquire((int) length);
+            try {
+                ByteStreams.readFully(inputStream, buffer.array(), buffer.arrayOffset(), (int) length);
+            } catch (IOException | RuntimeException e) {
+                bufferPool.release(buffer);
+                throw e;
+            }
+            buffer.limit((int) length);
+            return buffer;
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private String flightKey(String key) {
+        return bucketName + '/' + key;
+    }
+
+    private CachedValue fetchObject(String key, CachedValue cached) throws IOException {
+        long generation = generation(key);
+        GetObjectRequest request = new GetObjectRequest(bucketName, objectKey(key));
+        if(cached != null && cached.eTag() != null) {
+            request.withNonmatchingETagConstraint(cached.eTag());
+            revalidations.increment();
+        }
+        S3Object s3Object = getObject(key, request);
+        if(s3Object == null) {
+            if(cached != null) {
+                notModified.increment();
+                cached.validated();
+            }
+            return cached;
+        }
+        ObjectMetadata metadata = s3Object.getObjectMetadata();
+        try (InputStream inputStream = Compressor.decompress(metadata, s3Object.getObjectContent())) {
+            cached = new CachedValue(readBytes(inputStream, Compressor.length(metadata)), metadata.getETag());
+        }
+        if(valueCache != null) {
+            cache(key, cached, generation);
+        }
+        return cached;
+    }
+
+    /**
+     * Put a value read from the datastore into the value cache,
+     * unless its key was invalidated since the value was read
+     *
+     * @param key the string key of the value
+     * @param cached the value
+     * @param generation the invalidation generation of the key before the value was read
+     */
+    private void cache(String key, CachedValue cached, long generation) {
+        valueCache.put(key, cached);
+        // Checked after the put, an invalidation after the check removes the value itself
+        if(generation(key) != generation) {
+            valueCache.invalidate(key);
+        }
+    }
+
+    /**
+     * Get the invalidation generation of a key, which changes whenever the key is invalidated.
+     * Keys share generations by hash, so an invalidation may also change the generation of other keys.
+     *
+     * @param key the string key
+     * @return the generation
+     */
+    private long generation(String key) {
+        return generations.get(generationStripe(key));
+    }
+
+    private static int generationStripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    /**
+     * Get object, a missing object is remembered in the negative cache
+     * and removed from the value cache
+     *
+     * @param key the key of the object
+     * @param request the get request
+     * @return the object, null if the request constraints were not met
+     */
+    private S3Object getObject(String key, GetObjectRequest request) {
+        try {
+            return hedgeLatency != null ? hedgedGet(key, request) : call(key, () -> s3Client.getObject(request));
+        } catch (AmazonS3Exception e) {
+            if(e.getStatusCode() == 404) {
+                invalidate(key);
+                markMissing(key);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Get object, sending a duplicate request if the first request
+     * has not answered within the tracked latency percentile.
+     * The first successful answer is returned, the other is aborted.
+     *
+     * @param key the key of the object
+     * @param request the get request
+     * @return the object, null if the request constraints were not met
+     */
+    private S3Object hedgedGet(String key, GetObjectRequest request) {
+        long delay = hedgeLatency.percentile();
+        if(delay < 0) {
+            return timedGet(key, request);
+        }
+        CompletableFuture<S3Object> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        CompletableFuture.supplyAsync(() -> timedGet(key, request), hedgeExecutor())
+                .whenComplete((object, error) -> settle(winner, pending, object, error, false));
+        try {
+            try {
+                return winner.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Not sent if the first request failed meanwhile
+                if(pending.getAndIncrement() > 0) {
+                    hedges.increment();
+                    GetObjectRequest duplicate = (GetObjectRequest) request.clone();
+                    CompletableFuture.supplyAsync(() -> timedGet(key, duplicate), hedgeExecutor())
+                            .whenComplete((object, error) -> settle(winner, pending, object, error, true));
+                }
+                return winner.get();
+            }
+        } catch (InterruptedException e) {
+            return interrupted(winner, e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private S3Object timedGet(String key, GetObjectRequest request) {
+        long start = System.nanoTime();
+        S3Object object = call(key, () -> s3Client.getObject(request));
+        hedgeLatency.record(System.nanoTime() - start);
+        return object;
+    }
+
+    /**
+     * Complete the hedged read with the first successful answer,
+     * or with the error once all requests sent failed
+     */
+    private void settle(CompletableFuture<S3Object> winner, AtomicInteger pending,
+                        S3Object object, Throwable error, boolean hedge) {
+        if(error != null) {
+            if(pending.decrementAndGet() == 0) {
+                winner.completeExceptionally(error);
+            }
+            return;
+        }
+        if(winner.complete(object)) {
+            if(hedge) {
+                hedgeWins.increment();
+            }
+        } else if(object != null) {
+            object.getObjectContent().abort();
+        }
+    }
+
+    private static S3Object interrupted(CompletableFuture<S3Object> winner, InterruptedException e) {
+        Thread.currentThread().interrupt();
+        winner.thenAccept(object -> {
+            if(object != null) {
+                object.getObjectContent().abort();
+            }
+        });
+        throw new AmazonClientException("Interrupted while waiting for a read", e);
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+        if(cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if(cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new AmazonClientException(cause);
+    }
+
+    private ExecutorService hedgeExecutor() {
+        ExecutorService result = hedgeExecutor;
+        if(result == null) {
+            synchronized (this) {
+                result = hedgeExecutor;
+                if(result == null) {
+                    // Separate from the bounded executor, whose workers may be waiting on a hedged read
+                    result = Executors.newCachedThreadPool(
+                            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("dyno-hedge-%d").build());
+                    hedgeExecutor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isMissing(String key) {
+        return negativeCache != null && negativeCache.getIfPresent(key) != null;
+    }
+
+    private void markMissing(String key) {
+        if(negativeCache != null) {
+            negativeCache.put(key, Boolean.TRUE);
+        }
+    }
+
+    private boolean isStale(String key, CachedValue cached) {
+        return isStale(key, cached.validatedAt());
+    }
+
+    private boolean isStale(String key, DiskCache.Entry entry) {
+        return !entry.isValidated() || isStale(key, entry.validatedAt());
+    }
+
+    private boolean isStale(String key, long validatedAt) {
+        return revalidationPolicy != null && revalidationPolicy.isStale(key, validatedAt);
+    }
+
+    /**
+     * Remove a key from the local caches.
+     * Reads of the key in flight are no longer shared and do not cache their values,
+     * so reads after a write do not see a value read before it.
+     *
+     * @param key the key to remove
+     */
+    private void invalidate(String key) {
+        generations.incrementAndGet(generationStripe(key));
+        SingleFlight<String, CachedValue> flights = singleFlight;
+        if(flights != null) {
+            flights.forget(flightKey(key));
+        }
+        SingleFlight<String, ByteBuffer> reads = readFlight;
+        if(reads != null) {
+            reads.forget(flightKey(key));
+        }
+        if(valueCache != null) {
+            valueCache.invalidate(key);
+        }
+        if(negativeCache != null) {
+            negativeCache.invalidate(key);
+        }
+        if(diskCache != null) {
+            diskCache.invalidate(key);
+        }
+    }
+
+    private static byte[] readBytes(InputStream inputStream, long length) throws IOException {
+        if(length >= 0 && length <= Integer.MAX_VALUE) {
+            byte[] bytes = new byte[(int) length];
+            ByteStreams.readFully(inputStream, bytes);
+            return bytes;
+        }
+        return ByteStreams.toByteArray(inputStream);
+    }
+
+    /**
+     * Set the value cache
+     *
+     * @param valueCache the cache, null to always read from the datastore
+     */
+    void setValueCache(TinyLfuCache<String, CachedValue> valueCache) {
+        this.valueCache = valueCache;
+    }
+
+    /**
+     * Set the revalidation intervals of cached values
+     *
+     * @param revalidationPolicy the policy, null to never revalidate
+     */
+    void setRevalidationPolicy(RevalidationPolicy revalidationPolicy) {
+        this.revalidationPolicy = revalidationPolicy;
+    }
+
+    /**
+     * Set the cache of keys recently confirmed missing
+     *
+     * @param negativeCache the cache, null to always check the datastore
+     */
+    void setNegativeCache(Cache<String, Boolean> negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+
+    /**
+     * Set the local disk cache tier
+     *
+     * @param diskCache the disk cache, null to disable the disk tier
+     */
+    void setDiskCache(DiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * Set the multipart upload of large values
+     *
+     * @param partSize the number of bytes of a part
+     * @param parallelism the number of parts uploaded concurrently
+     */
+    void setMultipartUpload(int partSize, int parallelism) {
+        this.multipartUploader = new MultipartUploader(this, s3Client, bucketName, partSize, parallelism);
+    }
+
+    /**
+     * Set the ranged download of large values
+     *
+     * @param partSize the number of bytes of a range
+     * @param parallelism the number of ranges downloaded concurrently
+     */
+    void setRangedDownload(int partSize, int parallelism) {
+        this.rangePartSize = partSize;
+        this.rangeParallelism = parallelism;
+    }
+
+    /**
+     * Set the number of values read ahead of the consumer of entity scans
+     *
+     * @param readAhead the number of values read ahead
+     */
+    void setReadAhead(int readAhead) {
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Set whether object keys are prefixed with a hash shard of the key
+     *
+     * @param hashKeys true to spread keys across shards
+     */
+    void setHashKeys(boolean hashKeys) {
+        this.hashKeys = hashKeys;
+    }
+
+    /**
+     * Set whether {@code putIfAbsent} uses conditional writes.
+     * When enabled, the first conditional write finds out if the backend supports them.
+     *
+     * @param enabled true to write with {@code If-None-Match: *}, false to always use the key lock
+     */
+    void setConditionalWrites(boolean enabled) {
+        this.conditionalWrites = enabled ? null : Boolean.FALSE;
+    }
+
+    /**
+     * Set the lock of keys used by {@code putIfAbsent} on backends without conditional writes
+     *
+     * @param keyLock the key lock
+     */
+    void setKeyLock(KeyLock keyLock) {
+        this.keyLock = keyLock;
+    }
+
+    /**
+     * Set whether concurrent reads of the same key share a single request
+     *
+     * @param enabled true to coalesce concurrent reads
+     */
+    void setSingleFlight(boolean enabled) {
+        this.singleFlight = enabled ? new SingleFlight<>() : null;
+        this.readFlight = enabled ? new SingleFlight<>() : null;
+    }
+
+    /**
+     * Set the concurrency limits of requests to the datastore
+     *
+     * @param limits the limits by key prefix, null to not limit requests
+     */
+    void setConcurrencyLimits(ConcurrencyLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Set the retry policy of failed requests
+     *
+     * @param retryPolicy the retry policy, null to not retry requests
+     */
+    void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Set the latency percentile after which a duplicate read is sent
+     *
+     * @param percentile the percentile between 0 and 1, 0 to disable hedged reads
+     */
+    void setHedgedReads(double percentile) {
+        this.hedgeLatency = percentile > 0 ? new LatencyTracker(percentile) : null;
+    }
+
+    /**
+     * Get the retry, hedged read and concurrency limit statistics
+     *
+     * @return snapshot of the request statistics
+     */
+    public RequestStats getRequestStats() {
+        LatencyTracker latency = hedgeLatency;
+        SingleFlight<String, CachedValue> flights = singleFlight;
+        SingleFlight<String, ByteBuffer> reads = readFlight;
+        ConcurrencyLimits current = limits;
+        long coalesced = (flights != null ? flights.coalesced() : 0) + (reads != null ? reads.coalesced() : 0);
+        return new RequestStats(retries.sum(), hedges.sum(), hedgeWins.sum(),
+                latency != null ? latency.percentile() : -1, coalesced,
+                current != null ? current.throttled() : 0, current != null ? current.rejected() : 0);
+    }
+
+    /**
+     * Get the current concurrency limit of each key prefix
+     *
+     * @return the number of requests allowed in flight by key prefix, empty if requests are not limited
+     */
+    public Map<String, Integer> getConcurrencyLimits() {
+        ConcurrencyLimits current = limits;
+        return current != null ? current.limits() : Collections.emptyMap();
+    }
+
+    /**
+     * Send a request to the datastore within the concurrency limit of its key,
+     * retrying transient failures according to the retry policy
+     *
+     * @param key the key or prefix of the request
+     * @param request the request, must be repeatable
+     * @param <R> response type
+     * @return the response
+     * @throws ThrottledException if the request was rejected before it was sent
+     */
+    <R> R call(String key, Supplier<R> request) {
+        RetryPolicy policy = retryPolicy;
+        for(int attempt = 1; ; attempt++) {
+            try {
+                return callOnce(key, request);
+            } catch (RuntimeException e) {
+                if(policy == null || !policy.shouldRetry(e, attempt)) {
+                    throw e;
+                }
+                retries.increment();
+                try {
+                    TimeUnit.NANOSECONDS.sleep(policy.delayNanos(attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Send a request to the datastore within the concurrency limit of its key, without retries.
+     * Each attempt of {@linkplain #call(String, Supplier)} is sent through here,
+     * requests whose body cannot be read again must be sent through here directly.
+     *
+     * @param key the key or prefix of the request
+     * @param request the request
+     * @param <R> response type
+     * @return the response
+     * @throws ThrottledException if the request was rejected before it was sent
+     */
+    <R> R callOnce(String key, Supplier<R> request) {
+        ConcurrencyLimits current = limits;
+        return current != null ? current.call(key, request) : request.get();
+    }
+
+    /**
+     * Set the executor running concurrent and asynchronous operations of this instance
+     *
+     * @param executor the executor, null to create the executors on first use
+     */
+    void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        this.asyncExecutor = executor;
+    }
+
+    /**
+     * Set the size of the executor created on first use
+     *
+     * @param concurrency the number of worker threads
+     * @param queueCapacity the number of operations that can wait for a worker thread
+     */
+    void setConcurrency(int concurrency, int queueCapacity) {
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Get the number of concurrent operations
+     *
+     * @return the concurrency
+     */
+    int concurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Get the executor running concurrent operations of this instance.
+     * When the queue of the default executor is full,
+     * operations run on the submitting thread.
+     *
+     * @return the executor
+     */
+    ExecutorService executor() {
+        ExecutorService result = executor;
+        if(result == null) {
+            synchronized (this) {
+                result = executor;
+                if(result == null) {
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(concurrency, concurrency,
+                            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity),
+                            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("dyno-%d").build(),
+                            new ThreadPoolExecutor.CallerRunsPolicy());
+                    pool.allowCoreThreadTimeOut(true);
+                    result = pool;
+                    executor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the executor running the operations of {@linkplain DynoAsync}.
+     * Each operation gets a thread, started on demand and stopped when idle,
+     * so the number of threads follows the in-flight limit of {@linkplain DynoAsync}
+     * and operations never run on the submitting thread.
+     *
+     * @return the executor
+     */
+    ExecutorService asyncExecutor() {
+        ExecutorService result = asyncExecutor;
+        if(result == null) {
+            synchronized (this) {
+                result = asyncExecutor;
+                if(result == null) {
+                    result = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                            60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("dyno-async-%d").build());
+                    asyncExecutor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run a task for each input on the executor, with at most the given number of tasks in flight.
+     * When all permits are taken the calling thread runs the next task itself,
+     * and once all tasks are submitted it runs the tasks still waiting in the queue,
+     * so that fanning out from a worker thread of the executor cannot stall.
+     * Waits for all tasks, a task that throws is reported through the failure function.
+     *
+     * @param inputs the task inputs
+     * @param parallelism maximum number of tasks in flight on the executor
+     * @param task the task to run for each input
+     * @param failure creates the output of an input whose task failed
+     * @param <I> input type
+     * @param <R> output type
+     * @return the output of each input, in the order of the inputs
+     */
+    <I, R> List<R> fanOut(List<I> inputs, int parallelism, Task<I, R> task, BiFunction<I, Exception, R> failure) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(inputs.size());
+        List<Runnable> runs = new ArrayList<>(inputs.size());
+        Semaphore permits = new Semaphore(parallelism);
+        for(I input : inputs) {
+            CompletableFuture<R> future = new CompletableFuture<>();
+            AtomicBoolean claimed = new AtomicBoolean();
+            Runnable run = () -> {
+                if(claimed.compareAndSet(false, true)) {
+                    R output;
+                    try {
+                        output = task.apply(input);
+                    } catch (Exception e) {
+                        output = failure.apply(input, e);
+                    }
+                    future.complete(output);
+                }
+            };
+            futures.add(future);
+            runs.add(run);
+            if(!permits.tryAcquire()) {
+                run.run();
+                continue;
+            }
+            try {
+                executor().execute(() -> {
+                    try {
+                        run.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                if(claimed.compareAndSet(false, true)) {
+                    future.complete(failure.apply(input, e));
+                }
+            }
+        }
+        for(Runnable run : runs) {
+            run.run();
+        }
+        List<R> outputs = new ArrayList<>(futures.size());
+        for(CompletableFuture<R> future : futures) {
+            outputs.add(future.join());
+        }
+        return outputs;
+    }
+
+    /**
+     * Delete keys with a single multi-object delete request
+     *
+     * @param keys at most {@value #MAX_DELETE_BATCH} keys to delete
+     * @return the outcome of each key, in the order of the given keys
+     */
+    private List<Result<Void>> deleteBatch(List<Key> keys) {
+        List<DeleteObjectsRequest.KeyVersion> keyVersions = new ArrayList<>(keys.size());
+        for(Key key : keys) {
+            keyVersions.add(new DeleteObjectsRequest.KeyVersion(objectKey(key.stringKey())));
+        }
+        DeleteObjectsRequest request = new DeleteObjectsRequest(bucketName)
+                .withKeys(keyVersions)
+                .withQuiet(true);
+        Map<String, Exception> errors = new HashMap<>();
+        try {
+            call(keys.get(0).stringKey(), () -> s3Client.deleteObjects(request));
+        } catch (MultiObjectDeleteException e) {
+            for(MultiObjectDeleteException.DeleteError error : e.getErrors()) {
+                errors.put(logicalKey(error.getKey()), new AmazonS3Exception(error.getCode() + ": " + error.getMessage()));
+            }
+        }
+        List<Result<Void>> results = new ArrayList<>(keys.size());
+        for(Key key : keys) {
+            invalidate(key.stringKey());
+            Exception error = errors.get(key.stringKey());
+            results.add(error == null ? Result.ok(key, null) : Result.failed(key, error));
+        }
+        return results;
+    }
+
+    private List<Result<Void>> failBatch(List<Key> keys, Exception error) {
+        List<Result<Void>> results = new ArrayList<>(keys.size());
+        for(Key key : keys) {
+            results.add(Result.failed(key, error));
+        }
+        return results;
+    }
+
+    /**
+     * Task of a concurrent batch operation
+     */
+    @FunctionalInterface
+    interface Task<I, R> {
+        R apply(I input) throws Exception;
+    }
+
+    /**
+     * Get the codec registry
+     *
+     * @return the codec registry of this instance
+     */
+    CodecRegistry codecRegistry() {
+        return codecRegistry;
+    }
+
+    /**
+     * Calculate InputStream length without consuming it
+     *
+     * @param source the stream
+     * @return the number of bytes available without blocking, -1 if unknown
+     * @deprecated the available bytes are not the length of most streams,
+     *             stream values are now read until the end of stream
+     */
+    @Deprecated
     public static long calculateInputStreamLength(InputStream source) {
         try {
             return source.available();
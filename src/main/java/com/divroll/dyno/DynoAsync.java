@@ -0,0 +1,279 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade of a {@linkplain Dyno} instance.
+ * Operations run on the asynchronous executor of the {@linkplain Dyno} instance,
+ * which never runs them on the submitting thread and starts a thread for each operation in flight.
+ * At most the configured number of operations are in flight,
+ * further operations are queued and start as earlier operations complete,
+ * so submitting never blocks. When the queue is full the operation fails
+ * with {@linkplain ThrottledException}.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+public class DynoAsync {
+
+    private final Dyno dyno;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Operation<?>> waiting = new ConcurrentLinkedQueue<>();
+
+    public DynoAsync(Dyno dyno, int maxInFlight) {
+        this(dyno, maxInFlight, DynoClientBuilder.DEFAULT_MAX_QUEUED);
+    }
+
+    public DynoAsync(Dyno dyno, int maxInFlight, int maxQueued) {
+        if(dyno == null) {
+            throw new IllegalArgumentException("Dyno cannot be null");
+        }
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum in-flight operations must be greater than zero");
+        }
+        if(maxQueued < 0) {
+            throw new IllegalArgumentException("Maximum queued operations cannot be negative");
+        }
+        this.dyno = dyno;
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Get the associated {@linkplain Dyno}
+     *
+     * @return the synchronous Dyno instance
+     */
+    public Dyno getDyno() {
+        return dyno;
+    }
+
+    /**
+     * Get value by key
+     *
+     * @param key the string key of value to get
+     * @param clazz class type of value
+     * @param <T> type of value
+     * @return future of the value, completed with null if key does not exists
+     */
+    public <T> CompletableFuture<T> get(String key, Class<T> clazz) {
+        return submit(() -> dyno.get(key, clazz));
+    }
+
+    /**
+     * Put object by key
+     *
+     * @param key string key of the value to put
+     * @param value typed value to put
+     * @param clazz type of value
+     * @param <T> class type
+     * @return future completed with true if value was put, false if otherwise
+     */
+    public <T> CompletableFuture<Boolean> put(String key, T value, Class<T> clazz) {
+        return submit(() -> dyno.put(key, value, clazz));
+    }
+
+    /**
+     * Put object by key if absent
+     *
+     * @param key string key of the value to put
+     * @param value typed value to put
+     * @param clazz type of value
+     * @param <T> class type
+     * @return future completed with true if value was put, false if otherwise
+     */
+    public <T> CompletableFuture<Boolean> putIfAbsent(String key, T value, Class<T> clazz) {
+        return submit(() -> dyno.putIfAbsent(key, value, clazz));
+    }
+
+    /**
+     * Put an {@linkplain Entity} into the datastore
+     *
+     * @param entity the {@linkplain Entity} to put
+     * @return future of the {@linkplain Key}, completed with null if the entity was not put
+     */
+    public CompletableFuture<Key> put(Entity entity) {
+        return submit(() -> dyno.put(entity) ? entity.getKey() : null);
+    }
+
+    /**
+     * Put an {@linkplain Entity} into the datastore if it does not exist
+     *
+     * @param entity the {@linkplain Entity} to put
+     * @return future of the {@linkplain Key}, completed with null if the entity was not put
+     */
+    public CompletableFuture<Key> putIfAbsent(Entity entity) {
+        return submit(() -> dyno.putIfAbsent(entity) ? entity.getKey() : null);
+    }
+
+    /**
+     * Get Entity
+     *
+     * @param key the key of the entity
+     * @param valueType the type of the entity value
+     * @param <T> class type
+     * @return future of the Entity, with null value if key does not exists
+     */
+    public <T> CompletableFuture<Entity> getEntity(Key key, Class<T> valueType) {
+        return submit(() -> key.getEntity(valueType));
+    }
+
+    /**
+     * Deletes a value by key
+     *
+     * @param key the key of the value to be deleted
+     * @return future completed with true if key was deleted, false if otherwise
+     */
+    public CompletableFuture<Boolean> delete(String key) {
+        return submit(() -> dyno.delete(key));
+    }
+
+    /**
+     * Check if key exists
+     *
+     * @param key the key the check
+     * @return future completed with true if key exists, false if otherwise
+     */
+    public CompletableFuture<Boolean> isExists(String key) {
+        return submit(() -> dyno.isExists(key));
+    }
+
+    /**
+     * List keys
+     *
+     * @param maxKeys maximum number of keys per listing request
+     * @return future of the keys
+     */
+    public CompletableFuture<List<Key>> listKeys(int maxKeys) {
+        return submit(() -> dyno.listKeys(maxKeys));
+    }
+
+    /**
+     * List keys with prefix
+     *
+     * @param prefix the key prefix
+     * @param maxKeys maximum number of keys per listing request
+     * @return future of the keys
+     */
+    public CompletableFuture<List<Key>> listKeys(String prefix, int maxKeys) {
+        return submit(() -> dyno.listKeys(prefix, maxKeys));
+    }
+
+    /**
+     * Get the number of operations that can start without being queued
+     *
+     * @return available in-flight permits
+     */
+    public int availablePermits() {
+        return Math.max(0, maxInFlight - inFlight.get());
+    }
+
+    /**
+     * Get the number of operations queued until an operation in flight completes
+     *
+     * @return the number of queued operations
+     */
+    public int queuedOperations() {
+        return queued.get();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        Operation<T> pending = new Operation<>(operation);
+        if(queued.incrementAndGet() > maxQueued + availablePermits()) {
+            queued.decrementAndGet();
+            pending.future.completeExceptionally(
+                    new ThrottledException("Too many operations queued, limit is " + maxQueued));
+            return pending.future;
+        }
+        waiting.offer(pending);
+        dispatch();
+        return pending.future;
+    }
+
+    /**
+     * Start queued operations while in-flight permits are available
+     */
+    private void dispatch() {
+        while(!waiting.isEmpty()) {
+            int current = inFlight.get();
+            if(current >= maxInFlight) {
+                // The operation holding the permit dispatches again when it completes
+                return;
+            }
+            if(!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Operation<?> pending = waiting.poll();
+            if(pending == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            try {
+                dyno.asyncExecutor().execute(pending);
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet();
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Queued operation and its future
+     */
+    private final class Operation<T> implements Runnable {
+
+        private final Supplier<T> operation;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Operation(Supplier<T> operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public void run() {
+            T result;
+            try {
+                result = operation.get();
+            } catch (Throwable t) {
+                // Released before completion so that dependent stages can submit again
+                release();
+                future.completeExceptionally(t);
+                return;
+            }
+            release();
+            future.complete(result);
+        }
+
+        private void release() {
+            inFlight.decrementAndGet();
+            dispatch();
+        }
+    }
+
+}
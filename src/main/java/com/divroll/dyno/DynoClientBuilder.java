@@ -16,6 +16,14 @@
 package com.divroll.dyno;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.google.common.cache.CacheBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Builds a {@linkplain Dyno} instance with configuration
@@ -31,6 +39,17 @@ public final class DynoClientBuilder {
     public static final String DEFAULT_BUCKET_NAME = "s3dyno";
     public static final String DEFAULT_KEY_SPACE = ":";
     public static final int DEFAULT_BUFFER_SIZE = 1024;
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    public static final double DEFAULT_COMPRESSION_RATIO = 0.9;
+    public static final int DEFAULT_CONCURRENCY = 16;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    public static final int DEFAULT_MAX_QUEUED = 4096;
+    public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_TRANSFER_PARALLELISM = 4;
+    public static final int DEFAULT_MAX_WAITING = 256;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 10000;
+    public static final int DEFAULT_READ_AHEAD = 16;
 
     private AmazonS3 s3client;
     private String accessKey;
@@ -42,6 +61,36 @@ public final class DynoClientBuilder {
     private Integer bufferSize;
     private boolean hashKeys = false;
     private boolean encryptValues = false;
+    private boolean streamingReads = false;
+    private boolean singleFlight = true;
+    private Compression compression = Compression.NONE;
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    private double compressionRatio = DEFAULT_COMPRESSION_RATIO;
+    private long cacheMaximum = 0;
+    private boolean cacheWeighted = false;
+    private long negativeCacheMaximum = 0;
+    private long negativeCacheTtl = 0;
+    private ExecutorService executor;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int maxQueued = DEFAULT_MAX_QUEUED;
+    private int uploadPartSize = DEFAULT_PART_SIZE;
+    private int uploadParallelism = DEFAULT_TRANSFER_PARALLELISM;
+    private int downloadPartSize = DEFAULT_PART_SIZE;
+    private int downloadParallelism = DEFAULT_TRANSFER_PARALLELISM;
+    private File diskCacheDirectory;
+    private long diskCacheMaximum = 0;
+    private Map<String, Long> revalidationIntervals = new LinkedHashMap<>();
+    private Map<String, int[]> concurrencyLimits = new LinkedHashMap<>();
+    private int maxWaiting = DEFAULT_MAX_WAITING;
+    private long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_WAIT_MILLIS);
+    private RetryPolicy retryPolicy;
+    private double hedgePercentile = 0;
+    private boolean conditionalWrites = true;
+    private KeyLock keyLock;
+    private int readAhead = DEFAULT_READ_AHEAD;
+    private Map<Class<?>, ValueCodec<?>> codecs = new LinkedHashMap<>();
 
     private DynoClientBuilder() {}
 
@@ -82,6 +131,15 @@ public final class DynoClientBuilder {
         return this;
     }
 
+    /**
+     * Set the key layout and value encryption
+     *
+     * @param hashKeys true to prefix object keys with a hash shard of the key,
+     *                 spreading keys that share a prefix across partitions of the bucket.
+     *                 Keys stored with one layout cannot be read with the other.
+     * @param encryptValues true to encrypt values
+     * @return the client builder
+     */
     public final DynoClientBuilder withConfiguration(boolean hashKeys, boolean encryptValues) {
         this.hashKeys = hashKeys;
         this.encryptValues = encryptValues;
@@ -121,13 +179,456 @@ public final class DynoClientBuilder {
         return this;
     }
 
+    /**
+     * Decode values directly from the object stream instead of
+     * reading the whole value into memory first.
+     * The read buffer is capped to the configured buffer size.
+     *
+     * @param streamingReads true to decode from the object stream
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withStreamingReads(boolean streamingReads) {
+        this.streamingReads = streamingReads;
+        return this;
+    }
+
+    /**
+     * Compress values of at least the threshold size
+     *
+     * @param compression the compression codec
+     * @param threshold minimum size in bytes of values to compress
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withCompression(Compression compression, int threshold) {
+        return withCompression(compression, threshold, DEFAULT_COMPRESSION_RATIO);
+    }
+
+    /**
+     * Compress values of at least the threshold size,
+     * values that do not compress below the ratio are stored uncompressed
+     *
+     * @param compression the compression codec
+     * @param threshold minimum size in bytes of values to compress
+     * @param maxRatio maximum compressed to uncompressed size ratio worth storing
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withCompression(Compression compression, int threshold, double maxRatio) {
+        if(compression == null) {
+            throw new IllegalArgumentException("Compression cannot be null");
+        }
+        if(maxRatio <= 0 || maxRatio > 1) {
+            throw new IllegalArgumentException("Compression ratio must be greater than 0 and at most 1");
+        }
+        this.compression = compression;
+        this.compressionThreshold = threshold;
+        this.compressionRatio = maxRatio;
+        return this;
+    }
+
+    /**
+     * Cache values in memory, bounded by number of entries.
+     * Cached values are invalidated when put or deleted through this instance.
+     *
+     * @param maximumEntries maximum number of cached values
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withCache(long maximumEntries) {
+        this.cacheMaximum = maximumEntries;
+        this.cacheWeighted = false;
+        return this;
+    }
+
+    /**
+     * Cache values in memory, bounded by the total size of the cached values.
+     * Cached values are invalidated when put or deleted through this instance.
+     *
+     * @param maximumBytes maximum total size in bytes of cached values
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withCacheWeight(long maximumBytes) {
+        this.cacheMaximum = maximumBytes;
+        this.cacheWeighted = true;
+        return this;
+    }
+
+    /**
+     * Revalidate cached values of keys with the given prefix once the interval elapsed.
+     * Revalidation sends a conditional request with the ETag of the cached value,
+     * the value is downloaded again only if it changed.
+     *
+     * @param keyPrefix the key prefix, empty to match all keys
+     * @param interval the revalidation interval
+     * @param unit the time unit of the interval
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withRevalidation(String keyPrefix, long interval, TimeUnit unit) {
+        if(keyPrefix == null || unit == null) {
+            throw new IllegalArgumentException("Key prefix and time unit cannot be null");
+        }
+        this.revalidationIntervals.put(keyPrefix, unit.toNanos(interval));
+        return this;
+    }
+
+    /**
+     * Remember keys recently confirmed missing, so that existence checks
+     * and reads of those keys do not reach the datastore until the entry expires.
+     * Entries are invalidated when the key is put through this instance.
+     *
+     * @param maximumEntries maximum number of missing keys to remember
+     * @param ttl how long a missing key is remembered
+     * @param unit the time unit of ttl
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withNegativeCache(long maximumEntries, long ttl, TimeUnit unit) {
+        if(unit == null) {
+            throw new IllegalArgumentException("Time unit cannot be null");
+        }
+        this.negativeCacheMaximum = maximumEntries;
+        this.negativeCacheTtl = unit.toNanos(ttl);
+        return this;
+    }
+
+    /**
+     * Cache object bytes on local disk below the in-memory cache.
+     * The disk cache keeps its index in the directory and survives restarts,
+     * least recently used objects are evicted to stay within the byte budget.
+     *
+     * @param directory the directory of the disk cache, used exclusively by one instance
+     * @param maximumBytes maximum total size in bytes of cached objects
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withDiskCache(File directory, long maximumBytes) {
+        if(directory == null) {
+            throw new IllegalArgumentException("Disk cache directory cannot be null");
+        }
+        this.diskCacheDirectory = directory;
+        this.diskCacheMaximum = maximumBytes;
+        return this;
+    }
+
+    /**
+     * Set the multipart upload of large values,
+     * stream and file values larger than a part are uploaded in parts
+     *
+     * @param partSize the number of bytes of a part, at least 5 MB
+     * @param parallelism the number of parts uploaded concurrently
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withMultipartUpload(int partSize, int parallelism) {
+        if(partSize < MultipartUploader.MIN_PART_SIZE) {
+            throw new IllegalArgumentException("Part size must be at least " + MultipartUploader.MIN_PART_SIZE + " bytes");
+        }
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.uploadPartSize = partSize;
+        this.uploadParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Set the ranged download of large values into files,
+     * values larger than a part are downloaded as concurrent byte ranges
+     *
+     * @param partSize the number of bytes of a range
+     * @param parallelism the number of ranges downloaded concurrently
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withRangedDownload(int partSize, int parallelism) {
+        if(partSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Part size and parallelism must be at least 1");
+        }
+        this.downloadPartSize = partSize;
+        this.downloadParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Set whether concurrent reads of the same key share a single request,
+     * each caller decodes its own value from the shared bytes.
+     * Streaming reads are never coalesced.
+     *
+     * @param singleFlight true to coalesce concurrent reads, enabled by default
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+        return this;
+    }
+
+    /**
+     * Limit the concurrent requests of keys with the given prefix.
+     * The limit adapts between 1 and the maximum: it grows while requests succeed
+     * at normal latency and shrinks on throttled responses or rising latency.
+     * Each prefix has its own limit, the longest matching prefix wins.
+     *
+     * @param keyPrefix the key prefix, empty to match all keys
+     * @param initialLimit the initial number of concurrent requests
+     * @param maxLimit the maximum number of concurrent requests
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withConcurrencyLimit(String keyPrefix, int initialLimit, int maxLimit) {
+        if(keyPrefix == null) {
+            throw new IllegalArgumentException("Key prefix cannot be null");
+        }
+        if(initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must be at least 1 and the maximum at least the initial limit");
+        }
+        this.concurrencyLimits.put(keyPrefix, new int[] { initialLimit, maxLimit });
+        return this;
+    }
+
+    /**
+     * Set how requests over the concurrency limit wait,
+     * a request that cannot wait is rejected with {@linkplain ThrottledException}
+     *
+     * @param maxWaiting the number of requests that can wait per limit, 0 to reject immediately
+     * @param maxWait the maximum time a request waits
+     * @param unit the time unit of the maximum wait
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withConcurrencyLimitQueue(int maxWaiting, long maxWait, TimeUnit unit) {
+        if(maxWaiting < 0 || unit == null) {
+            throw new IllegalArgumentException("Waiting requests cannot be negative and time unit cannot be null");
+        }
+        this.maxWaiting = maxWaiting;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        return this;
+    }
+
+    /**
+     * Retry requests that failed with a transient error, a server error or a throttled response,
+     * waiting a random delay up to an exponential backoff between attempts.
+     * These retries are in addition to the retries of the S3 client.
+     *
+     * @param maxAttempts the maximum number of attempts of a request, including the first
+     * @param baseDelay the backoff after the first attempt, doubled after each further attempt
+     * @param maxDelay the maximum backoff
+     * @param unit the time unit of the delays
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withRetryPolicy(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit) {
+        if(unit == null) {
+            throw new IllegalArgumentException("Time unit cannot be null");
+        }
+        this.retryPolicy = new RetryPolicy(maxAttempts, unit.toNanos(baseDelay), unit.toNanos(maxDelay));
+        return this;
+    }
+
+    /**
+     * Send a duplicate read when a read has not answered within a percentile
+     * of recent read latencies, the first answer is used.
+     * With the 0.95 percentile about one read in twenty is duplicated.
+     *
+     * @param percentile the latency percentile between 0 and 1, 0 to disable hedged reads
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withHedgedReads(double percentile) {
+        if(percentile < 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Percentile must be at least 0 and less than 1");
+        }
+        this.hedgePercentile = percentile;
+        return this;
+    }
+
+    /**
+     * Set the number of values read and decoded ahead of the consumer of an entity scan,
+     * see {@linkplain Dyno#scanEntities(String, Class)}
+     *
+     * @param readAhead the number of value reads in flight
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withReadAhead(int readAhead) {
+        if(readAhead < 1) {
+            throw new IllegalArgumentException("Read-ahead must be at least 1");
+        }
+        this.readAhead = readAhead;
+        return this;
+    }
+
+    /**
+     * Set whether {@code putIfAbsent} writes with {@code If-None-Match: *},
+     * creating the value only if its key does not exists in a single atomic request.
+     * Backends answering conditional writes with Not Implemented fall back to the key lock on their own,
+     * disable conditional writes for backends that ignore the condition.
+     *
+     * @param conditionalWrites true to use conditional writes where supported, false to always use the key lock
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withConditionalWrites(boolean conditionalWrites) {
+        this.conditionalWrites = conditionalWrites;
+        return this;
+    }
+
+    /**
+     * Set the lock of keys used by {@code putIfAbsent} on backends without conditional writes.
+     * The default lock only serializes the puts of this instance,
+     * use a lock shared by all processes to keep {@code putIfAbsent} atomic across them.
+     *
+     * @param keyLock the key lock
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withKeyLock(KeyLock keyLock) {
+        if(keyLock == null) {
+            throw new IllegalArgumentException("Key lock cannot be null");
+        }
+        this.keyLock = keyLock;
+        return this;
+    }
+
+    /**
+     * Set the size of the executor running concurrent operations,
+     * {@linkplain DynoAsync} operations run on their own threads up to the in-flight limit
+     *
+     * @param concurrency the number of worker threads
+     * @param queueCapacity the number of operations that can wait for a worker thread
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withExecutor(int concurrency, int queueCapacity) {
+        if(concurrency < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Concurrency and queue capacity must be greater than zero");
+        }
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Run concurrent and asynchronous operations on the given executor,
+     * the executor is not shut down by Dyno.
+     * It should queue tasks rather than run them on the submitting thread,
+     * otherwise {@linkplain DynoAsync} operations may run on the caller,
+     * and should have as many threads as operations in flight.
+     *
+     * @param executor the executor
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of operations in flight for each {@linkplain DynoAsync},
+     * further operations are queued until an operation in flight completes,
+     * up to {@value #DEFAULT_MAX_QUEUED} operations
+     *
+     * @param maxInFlight maximum number of incomplete asynchronous operations
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withMaxInFlight(int maxInFlight) {
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum in-flight operations must be greater than zero");
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of operations in flight for each {@linkplain DynoAsync}
+     * and the number of further operations that can be queued,
+     * an operation submitted to a full queue fails with {@linkplain ThrottledException}
+     *
+     * @param maxInFlight maximum number of incomplete asynchronous operations
+     * @param maxQueued maximum number of operations waiting for an operation in flight to complete
+     * @return the client builder instance
+     */
+    public final DynoClientBuilder withMaxInFlight(int maxInFlight, int maxQueued) {
+        if(maxQueued < 0) {
+            throw new IllegalArgumentException("Maximum queued operations cannot be negative");
+        }
+        this.maxQueued = maxQueued;
+        return withMaxInFlight(maxInFlight);
+    }
+
+    /**
+     * Register a codec for a value type
+     *
+     * @param valueType the class type of value
+     * @param codec the codec used to encode and decode values of the type
+     * @param <T> class type
+     * @return the client builder instance
+     */
+    public final <T> DynoClientBuilder withCodec(Class<T> valueType, ValueCodec<T> codec) {
+        if(valueType == null || codec == null) {
+            throw new IllegalArgumentException("Value type and codec cannot be null");
+        }
+        this.codecs.put(valueType, codec);
+        return this;
+    }
+
     /**
      * Builds the Dyno with given parameters
      *
      * @return the Dyno instance
      */
     public final Dyno build() {
-        return new Dyno(s3client, accessKey, secretKey, s3Endpoint, region, bucketName, keySpace, bufferSize);
+        Dyno dyno = new Dyno(s3client, accessKey, secretKey, s3Endpoint, region, bucketName, keySpace, bufferSize);
+        dyno.setStreamingReads(streamingReads);
+        dyno.setHashKeys(hashKeys);
+        dyno.setReadAhead(readAhead);
+        dyno.setSingleFlight(singleFlight);
+        dyno.setRetryPolicy(retryPolicy);
+        dyno.setHedgedReads(hedgePercentile);
+        dyno.setConditionalWrites(conditionalWrites);
+        if(keyLock != null) {
+            dyno.setKeyLock(keyLock);
+        }
+        dyno.setConcurrency(concurrency, queueCapacity);
+        dyno.setExecutor(executor);
+        dyno.setMultipartUpload(uploadPartSize, uploadParallelism);
+        dyno.setRangedDownload(downloadPartSize, downloadParallelism);
+        if(cacheMaximum > 0) {
+            dyno.setValueCache(cacheWeighted
+                    ? new TinyLfuCache<String, CachedValue>(cacheMaximum,
+                            (key, value) -> value.length() + key.length(), cacheMaximum / 1024)
+                    : new TinyLfuCache<String, CachedValue>(cacheMaximum, (key, value) -> 1, cacheMaximum));
+        }
+        if(negativeCacheMaximum > 0 && negativeCacheTtl > 0) {
+            dyno.setNegativeCache(CacheBuilder.newBuilder()
+                    .maximumSize(negativeCacheMaximum)
+                    .expireAfterWrite(negativeCacheTtl, TimeUnit.NANOSECONDS)
+                    .<String, Boolean>build());
+        }
+        if(diskCacheDirectory != null && diskCacheMaximum > 0) {
+            try {
+                dyno.setDiskCache(new DiskCache(diskCacheDirectory, diskCacheMaximum));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open disk cache " + diskCacheDirectory, e);
+            }
+        }
+        if(!concurrencyLimits.isEmpty()) {
+            Map<String, ConcurrencyLimiter> limiters = new LinkedHashMap<>();
+            for(Map.Entry<String, int[]> entry : concurrencyLimits.entrySet()) {
+                limiters.put(entry.getKey(), new ConcurrencyLimiter(entry.getValue()[0], entry.getValue()[1],
+                        maxWaiting, maxWaitNanos));
+            }
+            dyno.setConcurrencyLimits(new ConcurrencyLimits(limiters));
+        }
+        if(!revalidationIntervals.isEmpty()) {
+            dyno.setRevalidationPolicy(new RevalidationPolicy(revalidationIntervals));
+        }
+        if(compression != Compression.NONE) {
+            dyno.setCompressor(new Compressor(compression, compressionThreshold, compressionRatio, dyno.bufferPool()));
+        }
+        for(Map.Entry<Class<?>, ValueCodec<?>> entry : codecs.entrySet()) {
+            register(dyno, entry.getKey(), entry.getValue());
+        }
+        return dyno;
+    }
+
+    /**
+     * Builds the asynchronous Dyno with given parameters
+     *
+     * @return the DynoAsync instance
+     */
+    public final DynoAsync buildAsync() {
+        return new DynoAsync(build(), maxInFlight, maxQueued);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void register(Dyno dyno, Class<T> valueType, ValueCodec<?> codec) {
+        dyno.codecRegistry().register(valueType, (ValueCodec<T>) codec);
     }
 
 }
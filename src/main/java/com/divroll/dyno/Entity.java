@@ -29,6 +29,7 @@ public class Entity<T> {
     private T value;
     private EntityBuilder builder;
     private Class<T> clazz;
+    private long size = -1;
 
     private Entity() {}
 
@@ -75,6 +76,19 @@ public class Entity<T> {
         return clazz;
     }
 
+    /**
+     * Get the number of value bytes decoded when this entity was read
+     *
+     * @return size in bytes, -1 if the entity was not read from the datastore
+     */
+    public long getSize() {
+        return size;
+    }
+
+    void setSize(long size) {
+        this.size = size;
+    }
+
     /**
      * Get value
      *
@@ -92,8 +106,7 @@ public class Entity<T> {
      * @return the Key of this Entity
      */
     public Key getKey() {
-        return KeyBuilder.create(builder.dyno())
-                .build(getKeyString());
+        return new Key(builder.dyno(), getKeyString());
     }
 
     /**
@@ -103,9 +116,7 @@ public class Entity<T> {
      */
     public Key put() {
         if(builder.dyno().put(this)) {
-            return KeyBuilder
-                    .create(builder.dyno())
-                    .build(getKeyString());
+            return new Key(builder.dyno(), getKeyString());
         }
         return null;
     }
@@ -117,9 +128,7 @@ public class Entity<T> {
      */
     public Key putIfAbsent() {
         if(builder.dyno().putIfAbsent(this)) {
-            return KeyBuilder
-                    .create(builder.dyno())
-                    .build(getKeyString());
+            return new Key(builder.dyno(), getKeyString());
         }
         return null;
     }
@@ -51,9 +51,9 @@ public final class EntityBuilder extends BuilderBase {
             throw new IllegalArgumentException("Key already finalized");
         }
         if(stringBuilder.length() != 0) {
-            stringBuilder.append(dyno.getKeySpace() + keyName + dyno.getKeySpace() + keyValue);
+            stringBuilder.append(dyno.getKeySpace()).append(keyName).append(dyno.getKeySpace()).append(keyValue);
         } else {
-            stringBuilder.append(keyName + dyno.getKeySpace() + keyValue);
+            stringBuilder.append(keyName).append(dyno.getKeySpace()).append(keyValue);
         }
         return this;
     }
@@ -63,7 +63,7 @@ public final class EntityBuilder extends BuilderBase {
             throw new IllegalArgumentException("Invalid key name");
         }
         if(stringBuilder.length() != 0) {
-            stringBuilder.append(dyno.getKeySpace() + keyName);
+            stringBuilder.append(dyno.getKeySpace()).append(keyName);
         } else {
             stringBuilder.append(keyName);
         }
@@ -72,8 +72,7 @@ public final class EntityBuilder extends BuilderBase {
 
     public <T> Entity build(String key, Object value, Class<T> clazz) {
         stringBuilder.setLength(0);
-        stringBuilder.append(key);
-        this.key = stringBuilder.toString();
+        this.key = String.valueOf(key);
         this.value = value;
         return new Entity(this, this.key, this.value, clazz);
     }
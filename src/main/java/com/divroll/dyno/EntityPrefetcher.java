@@ -0,0 +1,142 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import com.amazonaws.AmazonClientException;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reads the entities of a sequence of keys, keeping a window of reads in flight
+ * ahead of the consumer. Values are read and decoded on the executor,
+ * entities are returned in the order of the keys.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class EntityPrefetcher<T> implements Iterator<Entity<T>>, Closeable {
+
+    private final Dyno dyno;
+    private final Iterator<Key> keys;
+    private final Closeable source;
+    private final Class<T> valueType;
+    private final int window;
+    private final Executor executor;
+    private final Deque<FutureTask<Entity<T>>> inFlight = new ArrayDeque<>();
+
+    /**
+     * Create a prefetcher
+     *
+     * @param dyno the datastore
+     * @param keys the keys to read
+     * @param source closed with this prefetcher, may be null
+     * @param valueType the type of the values
+     * @param window the number of reads in flight
+     * @param executor the executor reading the values
+     */
+    EntityPrefetcher(Dyno dyno, Iterator<Key> keys, Closeable source, Class<T> valueType, int window,
+                     Executor executor) {
+        if(window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1");
+        }
+        this.dyno = dyno;
+        this.keys = keys;
+        this.source = source;
+        this.valueType = valueType;
+        this.window = window;
+        this.executor = executor;
+    }
+
+    private void fill() {
+        while(inFlight.size() < window && keys.hasNext()) {
+            Key key = keys.next();
+            FutureTask<Entity<T>> read = new FutureTask<>(() -> read(key.stringKey()));
+            inFlight.add(read);
+            try {
+                executor.execute(read);
+            } catch (RejectedExecutionException e) {
+                // Read by the consumer when the entity is needed
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entity<T> read(String key) {
+        Entity<T> entity = dyno.getEntity(key, valueType);
+        // A failed read is returned like a missing key
+        return entity != null ? entity : EntityBuilder.create(dyno).build(key, null, valueType);
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return !inFlight.isEmpty();
+    }
+
+    @Override
+    public Entity<T> next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        FutureTask<Entity<T>> read = inFlight.poll();
+        // A read not yet started by the executor runs on the calling thread
+        read.run();
+        Entity<T> entity;
+        try {
+            entity = read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new AmazonClientException("Interrupted while waiting for a read", e);
+        } catch (ExecutionException e) {
+            close();
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AmazonClientException(e.getCause());
+        }
+        fill();
+        return entity;
+    }
+
+    /**
+     * Stop reading, reads not yet started are cancelled
+     */
+    @Override
+    public void close() {
+        FutureTask<Entity<T>> read;
+        while((read = inFlight.poll()) != null) {
+            read.cancel(false);
+        }
+        if(source != null) {
+            try {
+                source.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable, memory-compact list of sorted keys.
+ * Keys are front coded in blocks: the first key of a block is stored whole,
+ * each further key as the length of the prefix shared with the previous key and the remaining bytes.
+ * Listings of keys with long common prefixes take a fraction of the heap of a list of {@linkplain Key}.
+ * Keys are decoded on access, iterate rather than get by index for sequential reads.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+public final class FrontCodedKeyList extends AbstractList<Key> implements RandomAccess {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private final Dyno dyno;
+    private final byte[] data;
+    private final int[] blocks;
+    private final int size;
+
+    private FrontCodedKeyList(Dyno dyno, byte[] data, int[] blocks, int size) {
+        this.dyno = dyno;
+        this.data = data;
+        this.blocks = blocks;
+        this.size = size;
+    }
+
+    /**
+     * Create a builder of a key list
+     *
+     * @param dyno the {@linkplain Dyno} instance of the keys
+     * @return the builder
+     */
+    public static Builder builder(Dyno dyno) {
+        if(dyno == null) {
+            throw new IllegalArgumentException("Dyno cannot be null");
+        }
+        return new Builder(dyno);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of bytes of the encoded keys
+     *
+     * @return the encoded size
+     */
+    public int encodedSize() {
+        return data.length + blocks.length * Integer.BYTES;
+    }
+
+    @Override
+    public Key get(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        Cursor cursor = new Cursor(blocks[index / BLOCK_SIZE]);
+        cursor.next(true);
+        for(int i = index % BLOCK_SIZE; i > 0; i--) {
+            cursor.next(false);
+        }
+        return new Key(dyno, cursor.string());
+    }
+
+    /**
+     * Check if the list contains a key, by binary search over the first key of each block
+     *
+     * @param key the string key
+     * @return true if the key is in the list, false if otherwise
+     */
+    public boolean containsKey(String key) {
+        return indexOfKey(key) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Key && containsKey(((Key) o).stringKey());
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof Key ? indexOfKey(((Key) o).stringKey()) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    private int indexOfKey(String key) {
+        if(key == null || size == 0) {
+            return -1;
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = blocks.length - 1;
+        while(low < high) {
+            int middle = (low + high + 1) >>> 1;
+            Cursor cursor = new Cursor(blocks[middle]);
+            cursor.next(true);
+            if(cursor.compareTo(bytes) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        Cursor cursor = new Cursor(blocks[low]);
+        int end = Math.min(size, (low + 1) * BLOCK_SIZE);
+        for(int index = low * BLOCK_SIZE; index < end; index++) {
+            cursor.next(index % BLOCK_SIZE == 0);
+            int comparison = cursor.compareTo(bytes);
+            if(comparison == 0) {
+                return index;
+            }
+            if(comparison > 0) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Iterator<Key> iterator() {
+        return new Iterator<Key>() {
+            private int index;
+            private Cursor cursor;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Key next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                boolean first = index % BLOCK_SIZE == 0;
+                if(first) {
+                    cursor = new Cursor(blocks[index / BLOCK_SIZE]);
+                }
+                cursor.next(first);
+                index++;
+                return new Key(dyno, cursor.string());
+            }
+        };
+    }
+
+    /**
+     * Decodes the keys of a block one after the other into a reused buffer
+     */
+    private final class Cursor {
+
+        private int position;
+        private byte[] key = new byte[64];
+        private int length;
+
+        Cursor(int position) {
+            this.position = position;
+        }
+
+        void next(boolean first) {
+            int shared = first ? 0 : readVarInt();
+            int suffix = readVarInt();
+            length = shared + suffix;
+            if(length > key.length) {
+                key = Arrays.copyOf(key, Math.max(length, key.length * 2));
+            }
+            System.arraycopy(data, position, key, shared, suffix);
+            position += suffix;
+        }
+
+        String string() {
+            return new String(key, 0, length, StandardCharsets.UTF_8);
+        }
+
+        int compareTo(byte[] other) {
+            return KeyOrder.compare(key, length, other, other.length);
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for(int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if(b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Builds a {@linkplain FrontCodedKeyList} from keys added in ascending order
+     */
+    public static final class Builder {
+
+        private final Dyno dyno;
+        private byte[] data = new byte[1024];
+        private int length;
+        private int[] blocks = new int[16];
+        private int size;
+        private byte[] previous;
+
+        private Builder(Dyno dyno) {
+            this.dyno = dyno;
+        }
+
+        /**
+         * Add a key, keys must be added in ascending order without duplicates
+         *
+         * @param key the key
+         * @return the builder
+         */
+        public Builder add(Key key) {
+            return add(key.stringKey());
+        }
+
+        /**
+         * Add a key, keys must be added in ascending order without duplicates
+         *
+         * @param key the string key
+         * @return the builder
+         */
+        public Builder add(String key) {
+            if(key == null) {
+                throw new IllegalArgumentException("Key cannot be null");
+            }
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            if(previous != null && KeyOrder.compare(previous, previous.length, bytes, bytes.length) >= 0) {
+                throw new IllegalArgumentException("Keys must be added in ascending order: " + key);
+            }
+            if(size % BLOCK_SIZE == 0) {
+                if(size / BLOCK_SIZE == blocks.length) {
+                    blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                }
+                blocks[size / BLOCK_SIZE] = length;
+                writeVarInt(bytes.length);
+                write(bytes, 0, bytes.length);
+            } else {
+                int shared = 0;
+                int max = Math.min(previous.length, bytes.length);
+                while(shared < max && previous[shared] == bytes[shared]) {
+                    shared++;
+                }
+                writeVarInt(shared);
+                writeVarInt(bytes.length - shared);
+                write(bytes, shared, bytes.length - shared);
+            }
+            previous = bytes;
+            size++;
+            return this;
+        }
+
+        /**
+         * Build the key list
+         *
+         * @return the immutable key list
+         */
+        public FrontCodedKeyList build() {
+            int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            return new FrontCodedKeyList(dyno, Arrays.copyOf(data, length), Arrays.copyOf(blocks, blockCount), size);
+        }
+
+        private void ensureCapacity(int additional) {
+            if(length + additional > data.length) {
+                data = Arrays.copyOf(data, Math.max(length + additional, data.length * 2));
+            }
+        }
+
+        private void write(byte[] bytes, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(bytes, offset, data, length, count);
+            length += count;
+        }
+
+        private void writeVarInt(int value) {
+            ensureCapacity(5);
+            while((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+    }
+
+}
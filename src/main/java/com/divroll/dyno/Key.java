@@ -15,9 +15,13 @@
  */
 package com.divroll.dyno;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
 /**
  * Boxed {@linkplain String} key
- * associated with a {@linkplain Dyno} instance
+ * associated with a {@linkplain Dyno} instance.
+ * Keys hold only the key string and the shared {@linkplain Dyno} instance.
  *
  * @author  Kerby Martino
  * @version 0-SNAPSHOT
@@ -26,14 +30,22 @@ package com.divroll.dyno;
 public class Key {
     private Key() {}
 
-    private KeyBuilder builder;
+    private Dyno dyno;
     private String key;
 
     public Key(KeyBuilder builder, String key) {
         if(builder == null || key == null) {
             throw new IllegalArgumentException();
         }
-        this.builder = builder;
+        this.dyno = builder.dyno();
+        this.key = key;
+    }
+
+    public Key(Dyno dyno, String key) {
+        if(dyno == null || key == null) {
+            throw new IllegalArgumentException();
+        }
+        this.dyno = dyno;
         this.key = key;
     }
 
@@ -51,13 +63,29 @@ public class Key {
         return this.key;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof Key)) {
+            return false;
+        }
+        return key.equals(((Key) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
     /**
      * Checks if the key exists
      *
      * @return true if key exists, false if key does not exists
      */
     public boolean isExist() {
-        return builder.dyno().isExists(this.key);
+        return dyno.isExists(this.key);
     }
 
     /**
@@ -66,7 +94,7 @@ public class Key {
      * @return true if key was deleted, false if operation failed
      */
     public boolean delete() {
-        return builder.dyno().delete(this.key);
+        return dyno.delete(this.key);
     }
 
     /**
@@ -77,11 +105,28 @@ public class Key {
      * @return null or the Entity
      */
     public <T> Entity getEntity(Class<T> valueType) {
-        T value = builder.dyno().get(key, valueType);
-        return EntityBuilder.create(builder.dyno())
+        T value = dyno.get(key, valueType);
+        return EntityBuilder.create(dyno)
                 .build(key, value, valueType);
     }
 
+    /**
+     * Get Entity, the number of bytes decoded is reported by {@linkplain Entity#getSize()}
+     *
+     * @param valueType the type of this Entity value
+     * @param stream true to decode directly from the object stream
+     * @param <T> class type
+     * @return the Entity, with null value if the key does not exists
+     */
+    public <T> Entity getEntity(Class<T> valueType, boolean stream) {
+        Entity entity = dyno.getEntity(key, valueType, stream);
+        if(entity == null) {
+            entity = EntityBuilder.create(dyno)
+                    .build(key, null, valueType);
+        }
+        return entity;
+    }
+
     /**
      * Get Entity value
      *
@@ -93,4 +138,27 @@ public class Key {
         return (T) getEntity(clazz).getValue();
     }
 
+    /**
+     * Get a byte range of the value
+     *
+     * @param offset the position of the first byte
+     * @param length the maximum number of bytes
+     * @return the bytes, fewer than length if the value ends first, null if the key does not exists
+     */
+    public ByteBuffer get(long offset, int length) {
+        return dyno.get(key, offset, length);
+    }
+
+    /**
+     * Write a byte range of the value into a channel
+     *
+     * @param offset the position of the first byte
+     * @param length the maximum number of bytes
+     * @param channel the channel to write into
+     * @return the number of bytes written, -1 if the key does not exists
+     */
+    public long get(long offset, long length, WritableByteChannel channel) {
+        return dyno.get(key, offset, length, channel);
+    }
+
 }
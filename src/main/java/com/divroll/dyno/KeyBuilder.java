@@ -35,7 +35,6 @@ public final class KeyBuilder extends BuilderBase {
         if(dyno == null) {
             throw new IllegalArgumentException("Dyno cannot be null");
         }
-        stringBuilder = new StringBuilder();
         this.dyno = dyno;
     }
 
@@ -63,10 +62,11 @@ public final class KeyBuilder extends BuilderBase {
         if(keyValue.contains(dyno.getKeySpace())) {
             throw new IllegalArgumentException("Key name cannot contain key spacing character");
         }
+        StringBuilder stringBuilder = stringBuilder();
         if(stringBuilder.length() != 0) {
-            stringBuilder.append(dyno.getKeySpace() + keyName + dyno.getKeySpace() + keyValue);
+            stringBuilder.append(dyno.getKeySpace()).append(keyName).append(dyno.getKeySpace()).append(keyValue);
         } else {
-            stringBuilder.append(keyName + dyno.getKeySpace() + keyValue);
+            stringBuilder.append(keyName).append(dyno.getKeySpace()).append(keyValue);
         }
         return this;
     }
@@ -81,8 +81,9 @@ public final class KeyBuilder extends BuilderBase {
         if(keyName == null || keyName.isEmpty()) {
             throw new IllegalArgumentException("Invalid key name");
         }
+        StringBuilder stringBuilder = stringBuilder();
         if(stringBuilder.length() != 0) {
-            stringBuilder.append(dyno.getKeySpace() + keyName);
+            stringBuilder.append(dyno.getKeySpace()).append(keyName);
         } else {
             stringBuilder.append(keyName);
         }
@@ -95,9 +96,9 @@ public final class KeyBuilder extends BuilderBase {
      * @return the Key object
      */
     public Key build() {
-        key = stringBuilder.toString();
+        key = stringBuilder().toString();
         stringBuilder.setLength(0);
-        return new Key(this, key);
+        return new Key(dyno, key);
     }
 
     /**
@@ -107,9 +108,22 @@ public final class KeyBuilder extends BuilderBase {
      * @return the Key object
      */
     public Key build(String key) {
-        stringBuilder.setLength(0);
+        if(stringBuilder != null) {
+            stringBuilder.setLength(0);
+        }
         this.key = key;
-        return new Key(this, key);
+        return new Key(dyno, key);
+    }
+
+    /**
+     * Get the buffer of the key being built, created on first use
+     * so that builders of whole keys do not allocate it
+     */
+    private StringBuilder stringBuilder() {
+        if(stringBuilder == null) {
+            stringBuilder = new StringBuilder();
+        }
+        return stringBuilder;
     }
 
 }
@@ -0,0 +1,55 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.io.IOException;
+
+/**
+ * Lock of a key, used by {@code putIfAbsent} on backends without conditional writes.
+ * Implementations backed by a lock service or lease store shared by all processes
+ * make {@code putIfAbsent} atomic across processes,
+ * the default lock only serializes the puts of a single {@linkplain Dyno} instance.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+@FunctionalInterface
+public interface KeyLock {
+
+    /**
+     * Acquire the lock of a key, blocking until it is held
+     *
+     * @param key the string key to lock
+     * @return the lease of the lock, closed to release the lock
+     * @throws IOException if the lock cannot be acquired
+     */
+    Lease acquire(String key) throws IOException;
+
+    /**
+     * Held lock of a key
+     */
+    @FunctionalInterface
+    interface Lease extends AutoCloseable {
+
+        /**
+         * Release the lock
+         */
+        @Override
+        void close();
+    }
+
+}
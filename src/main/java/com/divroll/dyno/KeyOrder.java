@@ -0,0 +1,79 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.util.Comparator;
+
+/**
+ * Order of keys by their unsigned UTF-8 bytes, the order of keys listed by the datastore.
+ * Strings are compared by code point, which orders them as their UTF-8 bytes
+ * without encoding them, unlike {@linkplain String#compareTo(String)}
+ * which orders supplementary characters before some other characters.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class KeyOrder {
+
+    static final Comparator<String> STRINGS = KeyOrder::compare;
+    static final Comparator<Key> KEYS = (a, b) -> compare(a.stringKey(), b.stringKey());
+
+    private KeyOrder() {}
+
+    /**
+     * Compare string keys in the order of their UTF-8 bytes
+     *
+     * @param a the first key
+     * @param b the second key
+     * @return negative, zero or positive if the first key is before, equal or after the second
+     */
+    static int compare(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for(int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if(x != y) {
+                if(Character.isSurrogate(x) || Character.isSurrogate(y)) {
+                    return Integer.compare(a.codePointAt(i), b.codePointAt(i));
+                }
+                return x - y;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Compare UTF-8 encoded keys by their unsigned bytes
+     *
+     * @param a the bytes of the first key
+     * @param aLength the length of the first key
+     * @param b the bytes of the second key
+     * @param bLength the length of the second key
+     * @return negative, zero or positive if the first key is before, equal or after the second
+     */
+    static int compare(byte[] a, int aLength, byte[] b, int bLength) {
+        int length = Math.min(aLength, bLength);
+        for(int i = 0; i < length; i++) {
+            int comparison = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if(comparison != 0) {
+                return comparison;
+            }
+        }
+        return aLength - bLength;
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.collect.Iterators;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Lazily iterates the keys with a prefix, or within a key range, one listing page at a time.
+ * The next page is requested in the background while the current page is consumed,
+ * so at most two pages per shard are held in memory.
+ * With hashed keys the shards are listed side by side and merged in key order.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class KeyScanner implements Iterator<Key>, Closeable {
+
+    private final List<Pages> shards;
+    private Iterator<Key> keys;
+
+    /**
+     * Create a scanner, the first page of each shard is requested immediately
+     *
+     * @param dyno the datastore
+     * @param prefix the key prefix
+     * @param pageSize maximum number of keys per listing request
+     * @param executor the executor requesting pages in the background
+     */
+    KeyScanner(Dyno dyno, String prefix, int pageSize, Executor executor) {
+        this(dyno, prefix, null, null, pageSize, executor);
+    }
+
+    /**
+     * Create a scanner of a key range, the first page of each shard is requested immediately.
+     * Listing starts after the lower bound and stops at the upper bound.
+     *
+     * @param dyno the datastore
+     * @param prefix the key prefix, shared by both bounds
+     * @param start the first key of the range, inclusive, null to start at the prefix
+     * @param end the last key of the range, exclusive, null to end with the prefix
+     * @param pageSize maximum number of keys per listing request
+     * @param executor the executor requesting pages in the background
+     */
+    KeyScanner(Dyno dyno, String prefix, String start, String end, int pageSize, Executor executor) {
+        if(pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        List<String> objectPrefixes = dyno.objectPrefixes(prefix);
+        List<Pages> pages = new ArrayList<>(objectPrefixes.size());
+        for(String objectPrefix : objectPrefixes) {
+            pages.add(new Pages(dyno, prefix, objectPrefix, start, end, pageSize, executor));
+        }
+        this.shards = pages;
+    }
+
+    private Iterator<Key> keys() {
+        if(keys == null) {
+            // Merging waits for the first page of every shard
+            keys = shards.size() == 1 ? shards.get(0)
+                    : Iterators.mergeSorted(shards, KeyOrder.KEYS);
+        }
+        return keys;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return keys().hasNext();
+    }
+
+    @Override
+    public Key next() {
+        return keys().next();
+    }
+
+    /**
+     * Stop the scan, a page request in flight is cancelled
+     */
+    @Override
+    public void close() {
+        for(Pages pages : shards) {
+            pages.close();
+        }
+    }
+
+    /**
+     * Pages of a single object key prefix
+     */
+    private static final class Pages implements Iterator<Key> {
+
+        private final Dyno dyno;
+        private final String prefix;
+        private final String objectPrefix;
+        private final String start;
+        private final String end;
+        private final int pageSize;
+        private final Executor executor;
+        private Iterator<S3ObjectSummary> page = Collections.emptyIterator();
+        private FutureTask<ListObjectsV2Result> next;
+        private String pending;
+
+        Pages(Dyno dyno, String prefix, String objectPrefix, String start, String end,
+              int pageSize, Executor executor) {
+            this.dyno = dyno;
+            this.prefix = prefix;
+            this.objectPrefix = objectPrefix;
+            this.start = start;
+            this.end = end;
+            this.pageSize = pageSize;
+            this.executor = executor;
+            this.next = fetch(null);
+        }
+
+        private FutureTask<ListObjectsV2Result> fetch(String continuationToken) {
+            ListObjectsV2Request request = new ListObjectsV2Request()
+                    .withPrefix(objectPrefix)
+                    .withMaxKeys(pageSize)
+                    .withContinuationToken(continuationToken);
+            if(continuationToken == null && start != null && !start.isEmpty()) {
+                // Start after the key without its last character, keys listed before the start are skipped
+                String shard = objectPrefix.substring(0, objectPrefix.length() - prefix.length());
+                request.setStartAfter(shard + start.substring(0, start.offsetByCodePoints(start.length(), -1)));
+            }
+            FutureTask<ListObjectsV2Result> task = new FutureTask<>(() -> dyno.listObjects(prefix, request));
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Requested by the consumer when the page is needed
+            }
+            return task;
+        }
+
+        /**
+         * Wait for a page request. A request not yet started by the executor
+         * runs on the calling thread, so that a saturated executor cannot stall the scan.
+         */
+        private static ListObjectsV2Result await(FutureTask<ListObjectsV2Result> task) {
+            task.run();
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException("Interrupted while waiting for a listing page", e);
+            } catch (ExecutionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new AmazonClientException(e.getCause());
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while(pending == null) {
+                while(!page.hasNext()) {
+                    if(next == null) {
+                        return false;
+                    }
+                    ListObjectsV2Result result = await(next);
+                    next = result.isTruncated() ? fetch(result.getNextContinuationToken()) : null;
+                    page = result.getObjectSummaries().iterator();
+                }
+                String key = dyno.logicalKey(page.next().getKey());
+                if(end != null && KeyOrder.compare(key, end) >= 0) {
+                    close();
+                    return false;
+                }
+                if(start == null || KeyOrder.compare(key, start) >= 0) {
+                    pending = key;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Key next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Key key = new Key(dyno, pending);
+            pending = null;
+            return key;
+        }
+
+        void close() {
+            if(next != null) {
+                next.cancel(false);
+                next = null;
+            }
+            page = Collections.emptyIterator();
+        }
+
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precompiled key shape with variable parts, such as {@code user_id:{}:password}.
+ * The literal parts are validated once when the template is compiled,
+ * filling in the variable parts appends them into a buffer presized to the key length,
+ * so the buffer never grows and is copied only once into the key.
+ * Variable parts cannot contain the key spacing character,
+ * so keys of the template can be parsed back into their variable parts.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+public final class KeyTemplate {
+
+    private static final String PLACEHOLDER = "{}";
+
+    private final Dyno dyno;
+    private final String pattern;
+    private final String keySpace;
+    private final String[] literals;
+    private final int literalLength;
+
+    private KeyTemplate(Dyno dyno, String pattern, String keySpace, String[] literals) {
+        this.dyno = dyno;
+        this.pattern = pattern;
+        this.keySpace = keySpace;
+        this.literals = literals;
+        int length = 0;
+        for(String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Compile a key template, variable parts are marked with {@code {}}
+     * and must be delimited by the key spacing character of the {@linkplain Dyno} instance
+     *
+     * @param dyno the {@linkplain Dyno} instance of the keys
+     * @param pattern the key pattern, e.g. {@code user_id:{}:password}
+     * @return the compiled template
+     */
+    public static KeyTemplate compile(Dyno dyno, String pattern) {
+        if(dyno == null) {
+            throw new IllegalArgumentException("Dyno cannot be null");
+        }
+        if(pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("Invalid key pattern");
+        }
+        String keySpace = dyno.getKeySpace();
+        if(keySpace == null || keySpace.isEmpty()) {
+            throw new IllegalArgumentException("Key templates require a key spacing character");
+        }
+        List<String> literals = new ArrayList<>();
+        int start = 0;
+        int placeholder;
+        while((placeholder = pattern.indexOf(PLACEHOLDER, start)) >= 0) {
+            literals.add(pattern.substring(start, placeholder));
+            start = placeholder + PLACEHOLDER.length();
+        }
+        literals.add(pattern.substring(start));
+        if(literals.size() == 1) {
+            throw new IllegalArgumentException("Key pattern has no variable part: " + pattern);
+        }
+        for(int i = 0; i < literals.size(); i++) {
+            String literal = literals.get(i);
+            if(literal.indexOf('{') >= 0 || literal.indexOf('}') >= 0) {
+                throw new IllegalArgumentException("Invalid placeholder in key pattern: " + pattern);
+            }
+            boolean first = i == 0;
+            boolean last = i == literals.size() - 1;
+            if((!first && !literal.startsWith(keySpace) && !(last && literal.isEmpty()))
+                    || (!last && !literal.endsWith(keySpace) && !(first && literal.isEmpty()))
+                    || (!first && !last && literal.length() < keySpace.length())) {
+                throw new IllegalArgumentException(
+                        "Variable parts must be delimited by the key spacing character: " + pattern);
+            }
+        }
+        return new KeyTemplate(dyno, pattern, keySpace, literals.toArray(new String[0]));
+    }
+
+    /**
+     * Get the pattern of this template
+     *
+     * @return the key pattern
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Get the number of variable parts
+     *
+     * @return the number of variable parts
+     */
+    public int getVariableCount() {
+        return literals.length - 1;
+    }
+
+    /**
+     * Get the literal prefix shared by all keys of this template, for listing and scanning
+     *
+     * @return the literal part before the first variable part
+     */
+    public String getPrefix() {
+        return literals[0];
+    }
+
+    /**
+     * Fill in the variable parts
+     *
+     * @param values the variable parts, in order
+     * @return the string key
+     */
+    public String format(Object... values) {
+        if(values == null || values.length != literals.length - 1) {
+            throw new IllegalArgumentException("Expected " + (literals.length - 1) + " variable parts");
+        }
+        String[] parts = new String[values.length];
+        int length = literalLength;
+        for(int i = 0; i < values.length; i++) {
+            String part = values[i] != null ? values[i].toString() : null;
+            if(part == null || part.isEmpty()) {
+                throw new IllegalArgumentException("Invalid key value");
+            }
+            if(part.contains(keySpace)) {
+                throw new IllegalArgumentException("Key value cannot contain key spacing character");
+            }
+            parts[i] = part;
+            length += part.length();
+        }
+        StringBuilder key = new StringBuilder(length).append(literals[0]);
+        for(int i = 0; i < parts.length; i++) {
+            key.append(parts[i]).append(literals[i + 1]);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Fill in the variable parts
+     *
+     * @param values the variable parts, in order
+     * @return the {@linkplain Key}
+     */
+    public Key key(Object... values) {
+        return new Key(dyno, format(values));
+    }
+
+    /**
+     * Check if a key has the shape of this template
+     *
+     * @param key the string key
+     * @return true if the key can be parsed, false if otherwise
+     */
+    public boolean matches(String key) {
+        return parse(key) != null;
+    }
+
+    /**
+     * Parse a key into its variable parts
+     *
+     * @param key the {@linkplain Key}
+     * @return the variable parts, in order, null if the key does not have the shape of this template
+     */
+    public String[] parse(Key key) {
+        return key != null ? parse(key.stringKey()) : null;
+    }
+
+    /**
+     * Parse a key into its variable parts
+     *
+     * @param key the string key
+     * @return the variable parts, in order, null if the key does not have the shape of this template
+     */
+    public String[] parse(String key) {
+        if(key == null || key.length() <= literalLength || !key.startsWith(literals[0])) {
+            return null;
+        }
+        String[] parts = new String[literals.length - 1];
+        int position = literals[0].length();
+        for(int i = 0; i < parts.length; i++) {
+            String next = literals[i + 1];
+            boolean last = i == parts.length - 1;
+            // Variable parts end at the next key spacing character
+            int end = key.indexOf(keySpace, position);
+            if(end < 0) {
+                end = key.length();
+            }
+            if(end == position) {
+                return null;
+            }
+            if(last ? end + next.length() != key.length() || !key.endsWith(next)
+                    : !key.startsWith(next, end)) {
+                return null;
+            }
+            parts[i] = key.substring(position, end);
+            position = end + next.length();
+        }
+        return parts;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.util.Arrays;
+
+/**
+ * Tracks a percentile of recent request latencies.
+ * Latencies are kept in a ring buffer of the most recent samples,
+ * the percentile is recomputed every few samples.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class LatencyTracker {
+
+    private static final int SAMPLES = 1024;
+    private static final int MIN_SAMPLES = 32;
+    private static final int UPDATE_INTERVAL = 64;
+
+    private final double percentile;
+    private final long[] samples = new long[SAMPLES];
+    private int count;
+    private int next;
+    private int sinceUpdate;
+    private volatile long value = -1;
+
+    /**
+     * Create a tracker
+     *
+     * @param percentile the tracked percentile, between 0 and 1
+     */
+    LatencyTracker(double percentile) {
+        if(percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1");
+        }
+        this.percentile = percentile;
+    }
+
+    /**
+     * Record the latency of a request
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % SAMPLES;
+        if(count < SAMPLES) {
+            count++;
+        }
+        if(count >= MIN_SAMPLES && (++sinceUpdate >= UPDATE_INTERVAL || value < 0)) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            value = sorted[Math.min(count - 1, (int) (percentile * count))];
+            sinceUpdate = 0;
+        }
+    }
+
+    /**
+     * Get the tracked percentile
+     *
+     * @return the latency in nanoseconds, -1 until enough samples were recorded
+     */
+    long percentile() {
+        return value;
+    }
+
+}
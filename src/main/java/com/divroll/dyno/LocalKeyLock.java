@@ -0,0 +1,48 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import com.google.common.util.concurrent.Striped;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Key lock of a single process, keys are locked by lock stripes
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class LocalKeyLock implements KeyLock {
+
+    private static final int STRIPES = 256;
+
+    private final Striped<Lock> locks = Striped.lazyWeakLock(STRIPES);
+
+    @Override
+    public Lease acquire(String key) throws InterruptedIOException {
+        Lock lock = locks.get(key);
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the lock of " + key);
+        }
+        return lock::unlock;
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import org.msgpack.MessagePack;
+import org.msgpack.template.Template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Default {@linkplain ValueCodec} backed by a shared {@linkplain MessagePack}
+ * and the compiled template of the value class
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class MessagePackCodec<T> implements ValueCodec<T> {
+
+    private final MessagePack msgpack;
+    private final Template<T> template;
+    private final Class<T> clazz;
+
+    MessagePackCodec(MessagePack msgpack, Template<T> template, Class<T> clazz) {
+        this.msgpack = msgpack;
+        this.template = template;
+        this.clazz = clazz;
+    }
+
+    @Override
+    public void encode(T value, OutputStream outputStream) throws IOException {
+        if(template == null) {
+            msgpack.write(outputStream, value);
+        } else {
+            msgpack.write(outputStream, value, template);
+        }
+    }
+
+    @Override
+    public T decode(ByteBuffer buffer) throws IOException {
+        if(template == null) {
+            return msgpack.read(buffer, clazz);
+        }
+        return msgpack.read(buffer, template);
+    }
+
+    @Override
+    public T decode(InputStream inputStream) throws IOException {
+        if(template == null) {
+            return msgpack.read(inputStream, clazz);
+        }
+        return msgpack.read(inputStream, template);
+    }
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Uploads large values in parts.
+ * Streams are cut into pooled part buffers, files are uploaded by offset,
+ * parts are uploaded concurrently up to the configured parallelism
+ * and the upload is aborted if any part fails.
+ * A part that finds no free permit, or that is still queued when the parts are joined,
+ * runs on the uploading thread, so an upload from a worker thread of the executor cannot stall.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class MultipartUploader {
+
+    /** Smallest part size accepted by S3, except for the last part */
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    /** Largest part size accepted by S3 */
+    static final long MAX_PART_SIZE = 5L * 1024 * 1024 * 1024;
+    /** Largest number of parts of an upload accepted by S3 */
+    static final int MAX_PARTS = 10000;
+
+    private final Dyno dyno;
+    private final AmazonS3 s3Client;
+    private final String bucketName;
+    private final int partSize;
+    private final int parallelism;
+    private final BufferPool partPool;
+
+    MultipartUploader(Dyno dyno, AmazonS3 s3Client, String bucketName, int partSize, int parallelism) {
+        if(partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("Part size must be at least " + MIN_PART_SIZE + " bytes");
+        }
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.dyno = dyno;
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.partSize = partSize;
+        this.parallelism = parallelism;
+        // One buffer per part in flight plus the part being filled
+        this.partPool = new BufferPool(partSize, parallelism + 1);
+    }
+
+    /**
+     * Get the part size, values larger than a part are uploaded in parts
+     *
+     * @return the number of bytes of a part
+     */
+    int partSize() {
+        return partSize;
+    }
+
+    /**
+     * Read into a buffer until it is full or the stream ends
+     *
+     * @param inputStream the stream to read
+     * @param buffer the buffer to fill
+     * @return the number of bytes read, less than part size only if the stream ended
+     * @throws IOException if stream cannot be read
+     */
+    private int fill(InputStream inputStream, ByteBuffer buffer) throws IOException {
+        byte[] array = buffer.array();
+        int offset = buffer.arrayOffset();
+        int length = 0;
+        while(length < partSize) {
+            int read = inputStream.read(array, offset + length, partSize - length);
+            if(read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * Upload a stream of unknown length in parts.
+     * Each further part is read into a pooled buffer while earlier parts upload,
+     * a stream longer than {@value #MAX_PARTS} parts fails the upload.
+     *
+     * @param key the object key
+     * @param first the bytes of the first part, part size long, not retained after this method returns
+     * @param inputStream the rest of the stream
+     * @param metadata the object metadata, without content length
+     * @param ifNoneMatch true to complete the upload only if the key does not exists
+     * @param executor the executor uploading the parts
+     * @throws Exception if the upload failed, the upload is aborted
+     */
+    void upload(String key, byte[] first, InputStream inputStream, ObjectMetadata metadata,
+                boolean ifNoneMatch, Executor executor) throws Exception {
+        String objectKey = dyno.objectKey(key);
+        String uploadId = initiate(key, objectKey, metadata);
+        Semaphore permits = new Semaphore(parallelism);
+        List<Part> parts = new ArrayList<>();
+        try {
+            submit(executor, permits, parts, uploadPart(key, objectKey, uploadId, 1, first, 0, partSize, null), null);
+            int partNumber = 2;
+            while(!failed(parts)) {
+                if(partNumber > MAX_PARTS) {
+                    throw new IOException("Value is larger than " + MAX_PARTS + " parts of " + partSize + " bytes");
+                }
+                ByteBuffer buffer = partPool.acquire(partSize);
+                int length;
+                try {
+                    length = fill(inputStream, buffer);
+                } catch (IOException e) {
+                    partPool.release(buffer);
+                    throw e;
+                }
+                if(length == 0) {
+                    partPool.release(buffer);
+                    break;
+                }
+                submit(executor, permits, parts, uploadPart(key, objectKey, uploadId, partNumber++,
+                        buffer.array(), buffer.arrayOffset(), length, buffer), buffer);
+                if(length < partSize) {
+                    break;
+                }
+            }
+            complete(key, objectKey, uploadId, parts, ifNoneMatch);
+        } catch (Exception e) {
+            abort(key, objectKey, uploadId, parts);
+            throw e;
+        }
+    }
+
+    /**
+     * Upload a file in parts, each part is read from its offset in the file.
+     * Files longer than {@value #MAX_PARTS} parts are uploaded in larger parts.
+     *
+     * @param key the object key
+     * @param file the file to upload
+     * @param metadata the object metadata, without content length
+     * @param ifNoneMatch true to complete the upload only if the key does not exists
+     * @param executor the executor uploading the parts
+     * @throws Exception if the upload failed, the upload is aborted
+     */
+    void upload(String key, File file, ObjectMetadata metadata, boolean ifNoneMatch,
+                Executor executor) throws Exception {
+        long fileLength = file.length();
+        long filePartSize = Math.max(partSize, (fileLength + MAX_PARTS - 1) / MAX_PARTS);
+        if(filePartSize > MAX_PART_SIZE) {
+            throw new IllegalArgumentException("File of " + fileLength + " bytes is larger than the maximum upload size");
+        }
+        String objectKey = dyno.objectKey(key);
+        String uploadId = initiate(key, objectKey, metadata);
+        Semaphore permits = new Semaphore(parallelism);
+        List<Part> parts = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            for(long offset = 0; offset < fileLength && !failed(parts); offset += filePartSize) {
+                long partLength = Math.min(filePartSize, fileLength - offset);
+                long fileOffset = offset;
+                int number = partNumber++;
+                submit(executor, permits, parts, () -> dyno.call(key, () -> s3Client.uploadPart(
+                        newPartRequest(objectKey, uploadId, number, partLength)
+                                .withFile(file)
+                                .withFileOffset(fileOffset)))
+                        .getPartETag(), null);
+            }
+            complete(key, objectKey, uploadId, parts, ifNoneMatch);
+        } catch (Exception e) {
+            abort(key, objectKey, uploadId, parts);
+            throw e;
+        }
+    }
+
+    private String initiate(String key, String objectKey, ObjectMetadata metadata) {
+        return dyno.call(key, () -> s3Client.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, objectKey, metadata)))
+                .getUploadId();
+    }
+
+    private UploadPartRequest newPartRequest(String objectKey, String uploadId, int partNumber, long partLength) {
+        return new UploadPartRequest()
+                .withBucketName(bucketName)
+                .withKey(objectKey)
+                .withUploadId(uploadId)
+                .withPartNumber(partNumber)
+                .withPartSize(partLength);
+    }
+
+    private void complete(String key, String objectKey, String uploadId, List<Part> parts, boolean ifNoneMatch) {
+        List<PartETag> partETags = new ArrayList<>(parts.size());
+        for(Part part : parts) {
+            // Parts still queued behind busy workers are uploaded here
+            part.run();
+        }
+        for(Part part : parts) {
+            partETags.add(part.future.join());
+        }
+        CompleteMultipartUploadRequest request =
+                new CompleteMultipartUploadRequest(bucketName, objectKey, uploadId, partETags);
+        if(ifNoneMatch) {
+            request.putCustomRequestHeader(Dyno.IF_NONE_MATCH, "*");
+        }
+        dyno.call(key, () -> s3Client.completeMultipartUpload(request));
+    }
+
+    /**
+     * Abort an upload once its parts in flight have settled,
+     * so that no part is stored after the abort. Parts not started yet are dropped.
+     */
+    private void abort(String key, String objectKey, String uploadId, List<Part> parts) {
+        for(Part part : parts) {
+            part.cancel();
+            try {
+                part.future.join();
+            } catch (Exception e) {
+                // Reported by the failed upload
+            }
+        }
+        try {
+            dyno.call(key, () -> {
+                s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectKey, uploadId));
+                return null;
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean failed(List<Part> parts) {
+        for(Part part : parts) {
+            if(part.future.isCompletedExceptionally()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Callable<PartETag> uploadPart(String key, String objectKey, String uploadId, int partNumber,
+                                          byte[] bytes, int offset, int length, ByteBuffer pooled) {
+        return () -> {
+            try {
+                return dyno.call(key, () -> s3Client.uploadPart(newPartRequest(objectKey, uploadId, partNumber, length)
+                        .withInputStream(new ByteArrayInputStream(bytes, offset, length))))
+                        .getPartETag();
+            } finally {
+                partPool.release(pooled);
+            }
+        };
+    }
+
+    /**
+     * Submit a part upload, the part runs on the uploading thread
+     * if no permit is available or the executor rejects it
+     *
+     * @param parts the parts of the upload, the submitted part is added
+     * @param pooled the part buffer released once the part is uploaded or dropped, may be null
+     */
+    private void submit(Executor executor, Semaphore permits, List<Part> parts, Callable<PartETag> task,
+                        ByteBuffer pooled) {
+        Part part = new Part(task, pooled);
+        parts.add(part);
+        if(!permits.tryAcquire()) {
+            part.run();
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    part.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            part.run();
+        }
+    }
+
+    /**
+     * Part upload run once, by a worker or by the uploading thread, whichever claims it first
+     */
+    private final class Part implements Runnable {
+
+        private final Callable<PartETag> task;
+        private final ByteBuffer pooled;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<PartETag> future = new CompletableFuture<>();
+
+        private Part(Callable<PartETag> task, ByteBuffer pooled) {
+            this.task = task;
+            this.pooled = pooled;
+        }
+
+        @Override
+        public void run() {
+            if(!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+
+        private void cancel() {
+            if(claimed.compareAndSet(false, true)) {
+                partPool.release(pooled);
+                future.cancel(false);
+            }
+        }
+    }
+
+}
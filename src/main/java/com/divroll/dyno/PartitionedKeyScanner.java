@@ -0,0 +1,370 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.collect.Iterators;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Iterates the keys with a prefix by listing partitions of the key space concurrently.
+ * The partitions are the common prefixes up to the next key spacing character after the prefix,
+ * keys without a further key spacing character are partitions of their own.
+ * Partitions are claimed in key order by a bounded number of workers,
+ * keys are returned in key order or as soon as they are listed.
+ * When no worker is available the consumer lists the next partition itself.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class PartitionedKeyScanner implements Iterator<Key>, Closeable {
+
+    private static final Object END = new Object();
+    private static final long POLL_MILLIS = 100;
+
+    private final Dyno dyno;
+    private final Executor executor;
+    private final int pageSize;
+    private final boolean ordered;
+    private final List<Partition> partitions;
+    private final AtomicInteger claimed = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final AtomicReference<RuntimeException> error = new AtomicReference<>();
+    /** Partitions listed ahead of the consumer, ordered scans only */
+    private final Semaphore window;
+    /** Keys listed by the workers, unordered scans only */
+    private final BlockingQueue<Object> listed;
+    private volatile boolean closed;
+
+    private int current;
+    private Partition direct;
+    private Iterator<Key> directKeys;
+    private Key nextKey;
+
+    /**
+     * Create a scanner, the partitions are discovered before this constructor returns
+     *
+     * @param dyno the datastore
+     * @param prefix the key prefix
+     * @param pageSize maximum number of keys per listing request
+     * @param parallelism the number of partitions listed concurrently
+     * @param ordered true to return keys in key order
+     * @param executor the executor running the workers
+     */
+    PartitionedKeyScanner(Dyno dyno, String prefix, int pageSize, int parallelism, boolean ordered,
+                          Executor executor) {
+        if(pageSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Page size and parallelism must be at least 1");
+        }
+        this.dyno = dyno;
+        this.executor = executor;
+        this.pageSize = pageSize;
+        this.ordered = ordered;
+        this.partitions = discover(prefix);
+        this.window = ordered ? new Semaphore(parallelism * 2) : null;
+        this.listed = ordered ? null : new LinkedBlockingQueue<>(pageSize * parallelism);
+        Thread consumer = Thread.currentThread();
+        for(int i = 0; i < Math.min(parallelism, partitions.size()); i++) {
+            try {
+                executor.execute(() -> {
+                    // A worker run by the consumer thread, when the executor is saturated, would wait for itself
+                    if(Thread.currentThread() != consumer) {
+                        work();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Remaining partitions are listed by the consumer
+                break;
+            }
+        }
+    }
+
+    /**
+     * List the common prefixes and the keys at the first level below the prefix
+     *
+     * @param prefix the key prefix
+     * @return the partitions in key order
+     */
+    private List<Partition> discover(String prefix) {
+        String delimiter = dyno.getKeySpace();
+        if(delimiter == null || delimiter.isEmpty()) {
+            return Collections.singletonList(new Partition(prefix, true));
+        }
+        // Common prefixes are shared by every shard with hashed keys
+        TreeMap<String, Boolean> found = new TreeMap<>();
+        for(String objectPrefix : dyno.objectPrefixes(prefix)) {
+            ListObjectsV2Request request = new ListObjectsV2Request()
+                    .withPrefix(objectPrefix)
+                    .withDelimiter(delimiter)
+                    .withMaxKeys(pageSize);
+            ListObjectsV2Result result;
+            do {
+                result = dyno.listObjects(prefix, request);
+                for(String commonPrefix : result.getCommonPrefixes()) {
+                    found.put(dyno.logicalKey(commonPrefix), Boolean.TRUE);
+                }
+                for(S3ObjectSummary objectSummary : result.getObjectSummaries()) {
+                    found.putIfAbsent(dyno.logicalKey(objectSummary.getKey()), Boolean.FALSE);
+                }
+                request.setContinuationToken(result.getNextContinuationToken());
+            } while (result.isTruncated());
+        }
+        List<Partition> partitions = new ArrayList<>(found.size());
+        for(Map.Entry<String, Boolean> entry : found.entrySet()) {
+            partitions.add(new Partition(entry.getKey(), entry.getValue()));
+        }
+        return partitions;
+    }
+
+    /**
+     * Claim and list partitions until none is left or the scan is closed
+     */
+    private void work() {
+        while(!closed) {
+            if(ordered) {
+                try {
+                    window.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if(closed) {
+                    return;
+                }
+            }
+            int index = claimed.getAndIncrement();
+            if(index >= partitions.size()) {
+                if(ordered) {
+                    window.release();
+                }
+                return;
+            }
+            Partition partition = partitions.get(index);
+            BlockingQueue<Object> sink = ordered ? partition.queue() : listed;
+            try {
+                Iterator<Key> keys = partition.open();
+                try {
+                    while(!closed && keys.hasNext()) {
+                        if(!put(sink, keys.next())) {
+                            return;
+                        }
+                    }
+                } finally {
+                    partition.close();
+                }
+            } catch (RuntimeException e) {
+                error.compareAndSet(null, e);
+            } finally {
+                if(ordered) {
+                    put(sink, END);
+                }
+                finished.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean put(BlockingQueue<Object> sink, Object item) {
+        try {
+            while(!closed) {
+                if(sink.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(nextKey != null) {
+            return true;
+        }
+        if(closed) {
+            return false;
+        }
+        try {
+            nextKey = ordered ? nextOrdered() : nextUnordered();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new AmazonClientException("Interrupted while waiting for listed keys", e);
+        }
+        return nextKey != null;
+    }
+
+    @Override
+    public Key next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Key key = nextKey;
+        nextKey = null;
+        return key;
+    }
+
+    private Key nextOrdered() throws InterruptedException {
+        while(current < partitions.size()) {
+            checkError();
+            Partition partition = partitions.get(current);
+            if(direct == null && claimed.compareAndSet(current, current + 1)) {
+                direct = partition;
+                directKeys = partition.open();
+            }
+            if(direct != null) {
+                if(directKeys.hasNext()) {
+                    return directKeys.next();
+                }
+                closeDirect();
+                finished.incrementAndGet();
+            } else {
+                Object item = partition.queue().take();
+                if(item != END) {
+                    return (Key) item;
+                }
+                window.release();
+            }
+            partitions.set(current++, null);
+        }
+        checkError();
+        return null;
+    }
+
+    private Key nextUnordered() throws InterruptedException {
+        while(true) {
+            if(direct != null) {
+                if(directKeys.hasNext()) {
+                    return directKeys.next();
+                }
+                closeDirect();
+                finished.incrementAndGet();
+            }
+            checkError();
+            Object item = listed.poll();
+            if(item != null) {
+                return (Key) item;
+            }
+            int index = claimed.get();
+            if(index < partitions.size() && claimed.compareAndSet(index, index + 1)) {
+                direct = partitions.get(index);
+                directKeys = direct.open();
+                continue;
+            }
+            if(finished.get() == partitions.size()) {
+                // Workers put their keys before counting the partition as finished
+                checkError();
+                return (Key) listed.poll();
+            }
+            item = listed.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if(item != null) {
+                return (Key) item;
+            }
+        }
+    }
+
+    private void closeDirect() {
+        direct.close();
+        direct = null;
+        directKeys = null;
+    }
+
+    private void checkError() {
+        RuntimeException e = error.get();
+        if(e != null) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stop the scan, workers stop after their current key
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if(direct != null) {
+            closeDirect();
+        }
+        if(window != null) {
+            // Wakes the workers waiting for the consumer
+            window.release(partitions.size());
+        }
+        if(listed != null) {
+            listed.clear();
+        }
+    }
+
+    /**
+     * A common prefix, or a single key without a further key spacing character
+     */
+    private final class Partition {
+
+        private final String prefix;
+        private final boolean isPrefix;
+        private BlockingQueue<Object> queue;
+        private volatile KeyScanner scanner;
+
+        Partition(String prefix, boolean isPrefix) {
+            this.prefix = prefix;
+            this.isPrefix = isPrefix;
+        }
+
+        synchronized BlockingQueue<Object> queue() {
+            if(queue == null) {
+                queue = new LinkedBlockingQueue<>(pageSize);
+            }
+            return queue;
+        }
+
+        Iterator<Key> open() {
+            if(!isPrefix) {
+                return Iterators.singletonIterator(new Key(dyno, prefix));
+            }
+            scanner = new KeyScanner(dyno, prefix, pageSize, executor);
+            return scanner;
+        }
+
+        void close() {
+            KeyScanner opened = scanner;
+            if(opened != null) {
+                opened.close();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+/**
+ * Snapshot of the retry, hedging, read coalescing and concurrency limit statistics of a {@linkplain Dyno} instance
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+public final class RequestStats {
+
+    private final long retryCount;
+    private final long hedgeCount;
+    private final long hedgeWinCount;
+    private final long hedgeDelayNanos;
+    private final long coalescedCount;
+    private final long throttledCount;
+    private final long rejectedCount;
+
+    public RequestStats(long retryCount, long hedgeCount, long hedgeWinCount, long hedgeDelayNanos) {
+        this(retryCount, hedgeCount, hedgeWinCount, hedgeDelayNanos, 0);
+    }
+
+    public RequestStats(long retryCount, long hedgeCount, long hedgeWinCount, long hedgeDelayNanos,
+                        long coalescedCount) {
+        this(retryCount, hedgeCount, hedgeWinCount, hedgeDelayNanos, coalescedCount, 0, 0);
+    }
+
+    public RequestStats(long retryCount, long hedgeCount, long hedgeWinCount, long hedgeDelayNanos,
+                        long coalescedCount, long throttledCount, long rejectedCount) {
+        this.retryCount = retryCount;
+        this.hedgeCount = hedgeCount;
+        this.hedgeWinCount = hedgeWinCount;
+        this.hedgeDelayNanos = hedgeDelayNanos;
+        this.coalescedCount = coalescedCount;
+        this.throttledCount = throttledCount;
+        this.rejectedCount = rejectedCount;
+    }
+
+    /**
+     * Get the number of failed requests that were retried
+     *
+     * @return the retry count
+     */
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * Get the number of duplicate reads sent because the first read was slow
+     *
+     * @return the hedge count
+     */
+    public long getHedgeCount() {
+        return hedgeCount;
+    }
+
+    /**
+     * Get the number of duplicate reads that answered before the first read
+     *
+     * @return the hedge win count
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount;
+    }
+
+    /**
+     * Get the current delay after which a duplicate read is sent
+     *
+     * @return the delay in nanoseconds, -1 if hedging is disabled or not enough reads were observed
+     */
+    public long getHedgeDelayNanos() {
+        return hedgeDelayNanos;
+    }
+
+    /**
+     * Get the number of reads that shared the request of a concurrent read of the same key
+     *
+     * @return the coalesced read count
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Get the number of responses that signaled the datastore is overloaded,
+     * each one shrinks the concurrency limit of the key prefix
+     *
+     * @return the throttled response count
+     */
+    public long getThrottledCount() {
+        return throttledCount;
+    }
+
+    /**
+     * Get the number of requests rejected with {@linkplain ThrottledException} before they were sent
+     *
+     * @return the rejected request count
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestStats{retryCount=" + retryCount
+                + ", hedgeCount=" + hedgeCount
+                + ", hedgeWinCount=" + hedgeWinCount
+                + ", hedgeDelayNanos=" + hedgeDelayNanos
+                + ", coalescedCount=" + coalescedCount
+                + ", throttledCount=" + throttledCount
+                + ", rejectedCount=" + rejectedCount + '}';
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+/**
+ * Outcome of the operation on a single key of a batch operation
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+public final class Result<T> {
+
+    public enum Status {
+        /** Operation was successful */
+        OK,
+        /** Key does not exists */
+        NOT_FOUND,
+        /** Key already exists and was not overwritten */
+        CONFLICT,
+        /** Operation failed, see {@linkplain Result#getError()} */
+        FAILED
+    }
+
+    private final Key key;
+    private final Status status;
+    private final T value;
+    private final Exception error;
+
+    private Result(Key key, Status status, T value, Exception error) {
+        this.key = key;
+        this.status = status;
+        this.value = value;
+        this.error = error;
+    }
+
+    static <T> Result<T> ok(Key key, T value) {
+        return new Result<>(key, Status.OK, value, null);
+    }
+
+    static <T> Result<T> notFound(Key key) {
+        return new Result<>(key, Status.NOT_FOUND, null, null);
+    }
+
+    static <T> Result<T> conflict(Key key) {
+        return new Result<>(key, Status.CONFLICT, null, null);
+    }
+
+    static <T> Result<T> failed(Key key, Exception error) {
+        return new Result<>(key, Status.FAILED, null, error);
+    }
+
+    /**
+     * Get the key of the operation
+     *
+     * @return the key
+     */
+    public Key getKey() {
+        return key;
+    }
+
+    /**
+     * Get the outcome of the operation
+     *
+     * @return the status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the value
+     *
+     * @return the value, null if the operation does not return a value or was not successful
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Get the error of a failed operation
+     *
+     * @return the error, null if the operation did not fail
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Check if the operation was successful
+     *
+     * @return true if status is {@linkplain Status#OK}, false if otherwise
+     */
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    @Override
+    public String toString() {
+        return "Result{key=" + key + ", status=" + status
+                + (error != null ? ", error=" + error : "") + '}';
+    }
+
+}
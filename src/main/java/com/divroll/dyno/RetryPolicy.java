@@ -0,0 +1,90 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy of failed requests to the datastore,
+ * with exponential backoff and full jitter between attempts.
+ * Only transient failures are retried: server errors, throttled responses
+ * and retryable client errors. Requests rejected by the concurrency limiter are not retried.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+
+    RetryPolicy(int maxAttempts, long baseDelayNanos, long maxDelayNanos) {
+        if(maxAttempts < 1 || baseDelayNanos < 0 || maxDelayNanos < baseDelayNanos) {
+            throw new IllegalArgumentException("Attempts must be at least 1 and delays cannot be negative");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayNanos = baseDelayNanos;
+        this.maxDelayNanos = maxDelayNanos;
+    }
+
+    /**
+     * Check if a failed attempt should be retried
+     *
+     * @param e the failure
+     * @param attempt the number of the failed attempt, starting from 1
+     * @return true if the failure is transient and attempts remain, false if otherwise
+     */
+    boolean shouldRetry(RuntimeException e, int attempt) {
+        return attempt < maxAttempts && isRetryable(e);
+    }
+
+    /**
+     * Get the delay before the next attempt, a random delay
+     * between zero and the exponential backoff of the attempt
+     *
+     * @param attempt the number of the failed attempt, starting from 1
+     * @return the delay in nanoseconds
+     */
+    long delayNanos(int attempt) {
+        long backoff = baseDelayNanos << Math.min(attempt - 1, 30);
+        if(backoff <= 0 || backoff > maxDelayNanos) {
+            backoff = maxDelayNanos;
+        }
+        return backoff > 0 ? ThreadLocalRandom.current().nextLong(backoff + 1) : 0;
+    }
+
+    static boolean isRetryable(RuntimeException e) {
+        if(e instanceof ThrottledException) {
+            return false;
+        }
+        if(e instanceof AmazonServiceException) {
+            AmazonServiceException serviceException = (AmazonServiceException) e;
+            // Not Implemented is not transient, conditional writes fall back on it
+            return (serviceException.getStatusCode() >= 500 && serviceException.getStatusCode() != 501)
+                    || ConcurrencyLimiter.isThrottling(serviceException);
+        }
+        if(e instanceof AmazonClientException) {
+            return ((AmazonClientException) e).isRetryable();
+        }
+        return false;
+    }
+
+}
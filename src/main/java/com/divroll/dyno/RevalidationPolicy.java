@@ -0,0 +1,63 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Revalidation intervals of cached values by key prefix,
+ * the longest matching prefix wins
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class RevalidationPolicy {
+
+    private final List<Map.Entry<String, Long>> intervals;
+
+    /**
+     * Create a policy
+     *
+     * @param intervals revalidation interval in nanoseconds by key prefix
+     */
+    RevalidationPolicy(Map<String, Long> intervals) {
+        this.intervals = new ArrayList<>(intervals.entrySet());
+        this.intervals.sort(Comparator.comparingInt(
+                (Map.Entry<String, Long> entry) -> entry.getKey().length()).reversed());
+    }
+
+    /**
+     * Check if a cached value must be revalidated
+     *
+     * @param key the key of the cached value
+     * @param validatedAt the {@linkplain System#nanoTime()} the value was last validated
+     * @return true if the revalidation interval elapsed, false if the value is fresh
+     *         or no interval applies to the key
+     */
+    boolean isStale(String key, long validatedAt) {
+        for(Map.Entry<String, Long> entry : intervals) {
+            if(key.startsWith(entry.getKey())) {
+                return System.nanoTime() - validatedAt >= entry.getValue();
+            }
+        }
+        return false;
+    }
+
+}
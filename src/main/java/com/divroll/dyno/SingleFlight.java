@@ -0,0 +1,195 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces concurrent loads of the same key.
+ * The first caller loads the value, callers arriving while the load is in flight
+ * wait for and share its result instead of loading the value again.
+ * Shared values must not be modified, a value can be released once every caller sharing it has read it.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Load a value, or wait for the load of the same key already in flight
+     *
+     * @param key the key of the value
+     * @param loader loads the value if no load is in flight
+     * @return the loaded value
+     * @throws IOException if the value cannot be loaded
+     */
+    V execute(K key, Loader<V> loader) throws IOException {
+        return execute(key, loader, value -> value, null);
+    }
+
+    /**
+     * Load a value and read it, or wait for the load of the same key already in flight and read its value.
+     * The value is released after its last reader.
+     *
+     * @param key the key of the value
+     * @param loader loads the value if no load is in flight
+     * @param reader reads the value, must not modify it
+     * @param release releases the value after its last reader, may be null
+     * @param <R> result type
+     * @return the result of the reader
+     * @throws IOException if the value cannot be loaded or read
+     */
+    <R> R execute(K key, Loader<V> loader, Reader<V, R> reader, Consumer<V> release) throws IOException {
+        while(true) {
+            Flight<V> flight = new Flight<>();
+            Flight<V> inFlight = flights.putIfAbsent(key, flight);
+            if(inFlight == null) {
+                return lead(key, flight, loader, reader, release);
+            }
+            if(inFlight.tryJoin()) {
+                coalesced.increment();
+                return read(inFlight, await(inFlight), reader, release);
+            }
+            // Load completed meanwhile, start a new one
+            flights.remove(key, inFlight);
+        }
+    }
+
+    private <R> R lead(K key, Flight<V> flight, Loader<V> loader, Reader<V, R> reader,
+                       Consumer<V> release) throws IOException {
+        V value;
+        try {
+            value = loader.load();
+        } catch (IOException | RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.close();
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        flights.remove(key, flight);
+        flight.close();
+        flight.complete(value);
+        return read(flight, value, reader, release);
+    }
+
+    private <R> R read(Flight<V> flight, V value, Reader<V, R> reader, Consumer<V> release) throws IOException {
+        try {
+            return reader.read(value);
+        } finally {
+            if(flight.readDone() && release != null && value != null) {
+                release.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Stop sharing the load of a key in flight, for example after the key was written.
+     * Callers arriving later start a new load instead of waiting for the earlier one.
+     *
+     * @param key the key of the value
+     */
+    void forget(K key) {
+        flights.remove(key);
+    }
+
+    /**
+     * Get the number of callers that shared the load of another caller
+     *
+     * @return the coalesced count
+     */
+    long coalesced() {
+        return coalesced.sum();
+    }
+
+    private static <V> V await(Flight<V> flight) throws IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a load in flight");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Load in flight, callers can join it until the load completes
+     */
+    private static final class Flight<V> extends CompletableFuture<V> {
+
+        private int readers = 1;
+        private boolean closed;
+
+        synchronized boolean tryJoin() {
+            if(closed) {
+                return false;
+            }
+            readers++;
+            return true;
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+
+        /**
+         * Count a reader as done
+         *
+         * @return true if it was the last reader
+         */
+        synchronized boolean readDone() {
+            return --readers == 0;
+        }
+    }
+
+    /**
+     * Loads a value
+     */
+    @FunctionalInterface
+    interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    /**
+     * Reads a loaded value
+     */
+    @FunctionalInterface
+    interface Reader<V, R> {
+        R read(V value) throws IOException;
+    }
+
+}
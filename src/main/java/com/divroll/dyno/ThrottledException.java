@@ -0,0 +1,37 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+/**
+ * Thrown when a request to the datastore is rejected by the concurrency limiter,
+ * because too many requests are already waiting or the wait timed out.
+ * Callers should back off instead of retrying immediately.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+public class ThrottledException extends RuntimeException {
+
+    public ThrottledException(String message) {
+        super(message);
+    }
+
+    public ThrottledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
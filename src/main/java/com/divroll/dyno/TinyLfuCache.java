@@ -0,0 +1,403 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Bounded concurrent cache with W-TinyLFU eviction.
+ * New entries enter a small LRU window, entries evicted from the window
+ * are admitted into the segmented LRU main space only if they were accessed
+ * more often than the main space victim, as estimated by a {@linkplain FrequencySketch}.
+ * Lookups are lock-free, accesses are buffered and replayed into the
+ * eviction policy under a lock.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+final class TinyLfuCache<K, V> {
+
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;
+
+    private static final int REMOVED = 0;
+    private static final int WINDOW = 1;
+    private static final int PROBATION = 2;
+    private static final int PROTECTED = 3;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ToLongBiFunction<K, V> weigher;
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final FrequencySketch sketch;
+
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedSpace = new AccessOrder<>();
+    private long windowWeight;
+    private long protectedWeight;
+    private long totalWeight;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Queue<Object> readBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger readBufferSize = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache
+     *
+     * @param maximum the maximum total weight of the cache
+     * @param weigher computes the weight of an entry
+     * @param expectedEntries the expected number of entries, used to size the frequency sketch
+     */
+    TinyLfuCache(long maximum, ToLongBiFunction<K, V> weigher, long expectedEntries) {
+        if(maximum <= 0) {
+            throw new IllegalArgumentException("Cache maximum must be greater than zero");
+        }
+        this.maximum = maximum;
+        this.weigher = weigher;
+        this.windowMaximum = Math.max(1, (long) (maximum * WINDOW_RATIO));
+        this.protectedMaximum = (long) ((maximum - windowMaximum) * PROTECTED_RATIO);
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    /**
+     * Get a cached value
+     *
+     * @param key the key
+     * @return the value, null if not cached
+     */
+    V get(K key) {
+        Node<K, V> node = data.get(key);
+        if(node == null) {
+            misses.increment();
+            recordRead(key);
+            return null;
+        }
+        hits.increment();
+        recordRead(node);
+        return node.value;
+    }
+
+    /**
+     * Get a cached value without recording an access
+     *
+     * @param key the key
+     * @return the value, null if not cached
+     */
+    V peek(K key) {
+        Node<K, V> node = data.get(key);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Cache a value, values heavier than the cache maximum are not cached
+     *
+     * @param key the key
+     * @param value the value
+     */
+    void put(K key, V value) {
+        long weight = weigher.applyAsLong(key, value);
+        if(weight > maximum) {
+            invalidate(key);
+            return;
+        }
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            Node<K, V> node = data.get(key);
+            if(node == null) {
+                node = new Node<>(key, value, weight);
+                data.put(key, node);
+                window.addLast(node);
+                node.queue = WINDOW;
+                windowWeight += weight;
+                totalWeight += weight;
+            } else {
+                long delta = weight - node.weight;
+                node.value = value;
+                node.weight = weight;
+                totalWeight += delta;
+                if(node.queue == WINDOW) {
+                    windowWeight += delta;
+                } else if(node.queue == PROTECTED) {
+                    protectedWeight += delta;
+                }
+                onAccess(node);
+            }
+            sketch.increment(key);
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a cached value
+     *
+     * @param key the key
+     */
+    void invalidate(K key) {
+        Node<K, V> node = data.remove(key);
+        if(node == null) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            unlink(node);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Remove all cached values
+     */
+    void invalidateAll() {
+        evictionLock.lock();
+        try {
+            for(K key : data.keySet()) {
+                Node<K, V> node = data.remove(key);
+                if(node != null) {
+                    unlink(node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Get the cache statistics
+     *
+     * @return snapshot of the cache statistics
+     */
+    CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), data.size(), weightedSize());
+    }
+
+    /**
+     * Get the total weight of the cached entries
+     *
+     * @return the weighted size
+     */
+    long weightedSize() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void recordRead(Object item) {
+        if(readBufferSize.get() < READ_BUFFER_SIZE) {
+            readBuffer.offer(item);
+            if(readBufferSize.incrementAndGet() >= READ_BUFFER_DRAIN_THRESHOLD && evictionLock.tryLock()) {
+                try {
+                    drainReadBuffer();
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drainReadBuffer() {
+        Object item;
+        while((item = readBuffer.poll()) != null) {
+            readBufferSize.decrementAndGet();
+            if(item instanceof Node) {
+                Node<K, V> node = (Node<K, V>) item;
+                if(node.queue != REMOVED) {
+                    sketch.increment(node.key);
+                    onAccess(node);
+                }
+            } else {
+                sketch.increment(item);
+            }
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                protectedSpace.addLast(node);
+                node.queue = PROTECTED;
+                protectedWeight += node.weight;
+                while(protectedWeight > protectedMaximum) {
+                    Node<K, V> demoted = protectedSpace.first();
+                    if(demoted == null || demoted == node) {
+                        break;
+                    }
+                    protectedSpace.remove(demoted);
+                    protectedWeight -= demoted.weight;
+                    probation.addLast(demoted);
+                    demoted.queue = PROBATION;
+                }
+                break;
+            case PROTECTED:
+                protectedSpace.moveToLast(node);
+                break;
+            default:
+        }
+    }
+
+    private void evict() {
+        Node<K, V> candidate = null;
+        while(windowWeight > windowMaximum) {
+            Node<K, V> node = window.first();
+            if(node == null) {
+                break;
+            }
+            window.remove(node);
+            windowWeight -= node.weight;
+            probation.addLast(node);
+            node.queue = PROBATION;
+            if(candidate == null) {
+                candidate = node;
+            }
+        }
+        while(totalWeight > maximum) {
+            Node<K, V> victim = probation.first();
+            if(victim == null) {
+                victim = protectedSpace.first();
+            }
+            if(victim == null) {
+                victim = window.first();
+            }
+            if(victim == null) {
+                break;
+            }
+            if(candidate == null || victim.queue != PROBATION) {
+                evictNode(victim);
+            } else if(victim == candidate) {
+                candidate = candidate.next;
+                evictNode(victim);
+            } else {
+                Node<K, V> next = candidate.next;
+                if(sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                    evictNode(victim);
+                } else {
+                    evictNode(candidate);
+                    candidate = next;
+                }
+            }
+        }
+    }
+
+    private void evictNode(Node<K, V> node) {
+        data.remove(node.key, node);
+        unlink(node);
+        evictions.increment();
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowWeight -= node.weight;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedSpace.remove(node);
+                protectedWeight -= node.weight;
+                break;
+            default:
+                return;
+        }
+        totalWeight -= node.weight;
+        node.queue = REMOVED;
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        long weight;
+        int queue;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class AccessOrder<K, V> {
+        private Node<K, V> head;
+        private Node<K, V> tail;
+
+        Node<K, V> first() {
+            return head;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if(tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node<K, V> node) {
+            if(node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if(node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if(tail != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes values of a given type.
+ * Codecs are registered per value type with
+ * {@linkplain DynoClientBuilder#withCodec(Class, ValueCodec)},
+ * types without a registered codec are encoded with MessagePack.
+ * Implementations must be safe to share across threads.
+ *
+ * @author  Kerby Martino
+ * @version 0-SNAPSHOT
+ * @since   2020-06-15
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * Encode value
+     *
+     * @param value the value to encode
+     * @param outputStream the stream to write the encoded value into,
+     *                     backed by a pooled {@linkplain ByteBuffer}
+     * @throws IOException if value cannot be encoded
+     */
+    void encode(T value, OutputStream outputStream) throws IOException;
+
+    /**
+     * Decode value from buffer.
+     * The buffer is pooled and must not be retained after this method returns.
+     *
+     * @param buffer the buffer positioned at the start of the encoded value
+     * @return the decoded value
+     * @throws IOException if value cannot be decoded
+     */
+    T decode(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Decode value from stream
+     *
+     * @param inputStream the stream of the encoded value
+     * @return the decoded value
+     * @throws IOException if value cannot be decoded
+     */
+    T decode(InputStream inputStream) throws IOException;
+
+}
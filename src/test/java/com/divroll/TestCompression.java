@@ -0,0 +1,110 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.divroll.dyno.*;
+import junit.framework.TestCase;
+import org.fluttercode.datafactory.impl.DataFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+@RunWith(JUnit4.class)
+public class TestCompression extends TestCase {
+
+    static final String BUCKET = "test-database";
+
+    AmazonS3 s3Client;
+    Dyno dyno;
+
+    @Before
+    public void setup() {
+        s3Client = AmazonS3ClientBuilder
+                .standard()
+                .withCredentials(new AWSStaticCredentialsProvider(
+                        new BasicAWSCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())))
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration("http://127.0.0.1:9000", "us-east-1"))
+                .build();
+        dyno = DynoClientBuilder
+                .simple()
+                .withClient(s3Client)
+                .withBucket(BUCKET)
+                .withCompression(Compression.DEFLATE, 1024)
+                .build();
+    }
+
+    @Test
+    public void testCompressedValue() {
+        String key = new DataFactory().getRandomText(20);
+        byte[] value = repeated(64 * 1024);
+        assertTrue(dyno.put(key, value, false));
+        ObjectMetadata metadata = s3Client.getObjectMetadata(BUCKET, key);
+        assertEquals(Compression.DEFLATE.getName(), metadata.getUserMetaDataOf("dyno-compression"));
+        assertTrue(metadata.getContentLength() < value.length);
+        assertTrue(Arrays.equals(value, dyno.getByte(key)));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(value, 1000, 1100), toArray(dyno.get(key, 1000, 100))));
+        assertTrue(dyno.delete(key));
+    }
+
+    @Test
+    public void testValueBelowThreshold() {
+        String key = new DataFactory().getRandomText(20);
+        byte[] value = repeated(512);
+        assertTrue(dyno.put(key, value, false));
+        ObjectMetadata metadata = s3Client.getObjectMetadata(BUCKET, key);
+        assertNull(metadata.getUserMetaDataOf("dyno-compression"));
+        assertEquals(value.length, metadata.getContentLength());
+        assertTrue(Arrays.equals(value, dyno.getByte(key)));
+        assertTrue(dyno.delete(key));
+    }
+
+    @Test
+    public void testValueWithoutCompressionMetadata() {
+        String key = new DataFactory().getRandomText(20);
+        String value = new String(repeated(64 * 1024), StandardCharsets.UTF_8);
+        s3Client.putObject(BUCKET, key, value);
+        assertNull(s3Client.getObjectMetadata(BUCKET, key).getUserMetaDataOf("dyno-compression"));
+        assertTrue(Arrays.equals(value.getBytes(StandardCharsets.UTF_8), dyno.getByte(key)));
+        assertTrue(dyno.delete(key));
+    }
+
+    private static byte[] repeated(int length) {
+        byte[] pattern = "Hello, world. ".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++) {
+            bytes[i] = pattern[i % pattern.length];
+        }
+        return bytes;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+}
@@ -30,7 +30,21 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.divroll.dyno.Dyno.sha256;
 import static com.divroll.dyno.Dyno.uuid;
@@ -378,4 +392,558 @@ public class TestDyno extends TestCase {
         assertNotNull(bytes);
         assertEquals(toPut.length, bytes.length);
     }
+
+    @Test
+    public void testCachedGet() {
+        Dyno cachedDyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withCache(1000)
+                .build();
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        String value = df.getRandomText(1024);
+        assertTrue(cachedDyno.putString(key, value));
+        assertEquals(value, cachedDyno.getString(key));
+        assertEquals(value, cachedDyno.getString(key));
+        assertEquals(1, cachedDyno.getCacheStats().getHitCount());
+        String updated = df.getRandomText(1024);
+        assertTrue(cachedDyno.putString(key, updated));
+        assertEquals(updated, cachedDyno.getString(key));
+        assertTrue(cachedDyno.delete(key));
+    }
+
+    @Test
+    public void testRevalidation() {
+        Dyno cachedDyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withCache(1000)
+                .withRevalidation("", 0, TimeUnit.MILLISECONDS)
+                .build();
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        String value = df.getRandomText(1024);
+        assertTrue(cachedDyno.putString(key, value));
+        assertEquals(value, cachedDyno.getString(key));
+        assertEquals(0, cachedDyno.getCacheStats().getRevalidationCount());
+        // Unchanged object, answered with not modified and the cached value is reused
+        assertEquals(value, cachedDyno.getString(key));
+        CacheStats stats = cachedDyno.getCacheStats();
+        assertEquals(1, stats.getRevalidationCount());
+        assertEquals(1, stats.getNotModifiedCount());
+        // Overwritten by another instance, the changed object is downloaded again
+        String updated = df.getRandomText(1024);
+        assertTrue(dyno.putString(key, updated));
+        assertEquals(updated, cachedDyno.getString(key));
+        stats = cachedDyno.getCacheStats();
+        assertEquals(2, stats.getRevalidationCount());
+        assertEquals(1, stats.getNotModifiedCount());
+        assertTrue(cachedDyno.delete(key));
+    }
+
+    @Test
+    public void testStreamingReadRevalidation() {
+        Dyno cachedDyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withCache(1000)
+                .withRevalidation("", 0, TimeUnit.MILLISECONDS)
+                .build();
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        String value = df.getRandomText(1024);
+        assertTrue(dyno.putString(key, value));
+        assertEquals(value, cachedDyno.get(key, String.class, false));
+        // Written by another instance, the cached value is stale
+        String updated = df.getRandomText(1024);
+        assertTrue(dyno.putString(key, updated));
+        assertEquals(updated, cachedDyno.get(key, String.class, true));
+        assertEquals(1, cachedDyno.getCacheStats().getRevalidationCount());
+        assertTrue(cachedDyno.delete(key));
+    }
+
+    @Test
+    public void testIsExistsExactKey() {
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        assertTrue(dyno.putString(key + "0", df.getRandomText(20)));
+        assertFalse(dyno.isExists(key));
+        assertTrue(dyno.isExists(key + "0"));
+        assertTrue(dyno.delete(key + "0"));
+    }
+
+    @Test
+    public void testExistsAll() {
+        DataFactory df = new DataFactory();
+        Key present = EntityBuilder.create(dyno)
+                .with("testkey", df.getRandomText(20))
+                .build(df.getRandomText(100), String.class)
+                .put();
+        Key absent = KeyBuilder.create(dyno)
+                .with("testkey", df.getRandomText(20))
+                .build();
+        Map<Key, Result<Boolean>> result = dyno.existsAll(Arrays.asList(present, absent));
+        assertEquals(2, result.size());
+        assertTrue(result.get(present).isOk());
+        assertTrue(result.get(present).getValue());
+        assertTrue(result.get(absent).isOk());
+        assertFalse(result.get(absent).getValue());
+        assertTrue(present.delete());
+    }
+
+    @Test
+    public void testGetAll() {
+        DataFactory df = new DataFactory();
+        List<Key> keys = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            keys.add(EntityBuilder.create(dyno)
+                    .with("testkey", df.getRandomText(20))
+                    .build("value" + i, String.class)
+                    .put());
+        }
+        Key absent = KeyBuilder.create(dyno)
+                .with("testkey", df.getRandomText(20))
+                .build();
+        keys.add(10, absent);
+        List<Result<String>> results = dyno.getAll(keys, String.class, 4);
+        assertEquals(keys.size(), results.size());
+        for(int i = 0; i < keys.size(); i++) {
+            Result<String> result = results.get(i);
+            assertEquals(keys.get(i), result.getKey());
+            if(keys.get(i).equals(absent)) {
+                assertEquals(Result.Status.NOT_FOUND, result.getStatus());
+            } else {
+                assertTrue(result.isOk());
+                assertEquals("value" + (i < 10 ? i : i - 1), result.getValue());
+                assertTrue(keys.get(i).delete());
+            }
+        }
+    }
+
+    @Test
+    public void testPutAll() {
+        DataFactory df = new DataFactory();
+        List<Entity> entities = new ArrayList<>();
+        for(int i = 0; i < 50; i++) {
+            entities.add(EntityBuilder.create(dyno)
+                    .with("testkey", df.getRandomText(20))
+                    .build(df.getRandomText(100), String.class));
+        }
+        List<Result<Void>> results = dyno.putAll(entities);
+        assertEquals(entities.size(), results.size());
+        for(int i = 0; i < entities.size(); i++) {
+            assertTrue(results.get(i).isOk());
+            assertEquals(entities.get(i).getKey(), results.get(i).getKey());
+        }
+        results = dyno.putAllIfAbsent(entities.subList(0, 10));
+        for(Result<Void> result : results) {
+            assertEquals(Result.Status.CONFLICT, result.getStatus());
+        }
+        for(Entity entity : entities) {
+            assertEquals(entity.getValue(), entity.getKey().get(String.class));
+            assertTrue(entity.getKey().delete());
+        }
+    }
+
+    @Test
+    public void testDeleteAll() {
+        DataFactory df = new DataFactory();
+        List<Key> keys = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            keys.add(EntityBuilder.create(dyno)
+                    .with("testkey", df.getRandomText(20))
+                    .build(df.getRandomText(100), String.class)
+                    .put());
+        }
+        List<Result<Void>> results = dyno.deleteAll(keys);
+        assertEquals(keys.size(), results.size());
+        for(int i = 0; i < keys.size(); i++) {
+            assertTrue(results.get(i).isOk());
+            assertEquals(keys.get(i), results.get(i).getKey());
+            assertFalse(keys.get(i).isExist());
+        }
+    }
+
+    @Test
+    public void testDeleteByPrefix() {
+        String userId = uuid();
+        for(int i = 0; i < 20; i++) {
+            assertNotNull(EntityBuilder.create(dyno)
+                    .with("user_id", userId)
+                    .with("field" + i)
+                    .build("value" + i, String.class)
+                    .put());
+        }
+        assertEquals(20, dyno.deleteByPrefix("user_id:" + userId + ":"));
+        assertTrue(dyno.listKeys("user_id:" + userId + ":", 10).isEmpty());
+    }
+
+    @Test
+    public void testPutMultipartStream() throws IOException {
+        Dyno multipartDyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withMultipartUpload(5 * 1024 * 1024, 4)
+                .build();
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        byte[] content = new byte[12 * 1024 * 1024 + 123];
+        new Random().nextBytes(content);
+        // Buffered stream does not report its length
+        InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(content), 1024) {
+            @Override
+            public synchronized int available() {
+                return 0;
+            }
+        };
+        assertTrue(multipartDyno.put(key, inputStream));
+        assertTrue(Arrays.equals(content, multipartDyno.getByte(key)));
+        assertTrue(multipartDyno.delete(key));
+    }
+
+    @Test
+    public void testRangedGetFile() throws IOException {
+        Dyno rangedDyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withRangedDownload(64 * 1024, 4)
+                .build();
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        byte[] content = new byte[1024 * 1024 + 17];
+        new Random().nextBytes(content);
+        assertTrue(rangedDyno.put(key, content, false));
+        File file = File.createTempFile("dyno", ".bin");
+        rangedDyno.getFile(key, file);
+        assertTrue(Arrays.equals(content, Files.toByteArray(file)));
+        assertTrue(rangedDyno.delete(key));
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testGetRange() {
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        byte[] content = new byte[64 * 1024];
+        new Random().nextBytes(content);
+        assertTrue(dyno.put(key, content, false));
+        ByteBuffer range = KeyBuilder.create(dyno).build(key).get(1000, 500);
+        assertEquals(500, range.remaining());
+        byte[] bytes = new byte[range.remaining()];
+        range.get(bytes);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 1000, 1500), bytes));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(100, dyno.get(key, content.length - 100, 1000, Channels.newChannel(outputStream)));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, content.length - 100, content.length),
+                outputStream.toByteArray()));
+        assertEquals(0, dyno.get(key, content.length + 1, 10).remaining());
+        assertTrue(dyno.delete(key));
+    }
+
+    @Test
+    public void testConcurrentGetSameKey() throws Exception {
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        String value = df.getRandomText(1024);
+        assertTrue(dyno.put(key, value, String.class));
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<String>> futures = new ArrayList<>();
+        for(int i = 0; i < 64; i++) {
+            futures.add(executor.submit(() -> dyno.get(key, String.class)));
+        }
+        for(Future<String> future : futures) {
+            assertEquals(value, future.get());
+        }
+        executor.shutdown();
+        assertTrue(dyno.delete(key));
+    }
+
+    @Test
+    public void testConcurrentPutIfAbsent() throws Exception {
+        DataFactory df = new DataFactory();
+        String key = "username:" + df.getRandomText(20);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for(int i = 0; i < 32; i++) {
+            byte[] value = df.getRandomText(10).getBytes();
+            futures.add(executor.submit(() -> dyno.putIfAbsent(key, value)));
+        }
+        int created = 0;
+        for(Future<Boolean> future : futures) {
+            if(future.get()) {
+                created++;
+            }
+        }
+        executor.shutdown();
+        assertEquals(1, created);
+        assertTrue(dyno.delete(key));
+    }
+
+    @Test
+    public void testPutIfAbsentWithKeyLock() {
+        AtomicInteger locked = new AtomicInteger();
+        Dyno lockedDyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withConditionalWrites(false)
+                .withKeyLock(key -> {
+                    locked.incrementAndGet();
+                    return () -> {};
+                })
+                .build();
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        assertTrue(lockedDyno.putIfAbsent(key, df.getRandomText(10).getBytes()));
+        assertFalse(lockedDyno.putIfAbsent(key, df.getRandomText(10).getBytes()));
+        assertEquals(2, locked.get());
+        assertTrue(lockedDyno.delete(key));
+    }
+
+    @Test
+    public void testConcurrentGetByteSameKey() throws Exception {
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        byte[] value = df.getRandomText(4096).getBytes(Charset.defaultCharset());
+        assertTrue(dyno.put(key, value, false));
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<byte[]>> futures = new ArrayList<>();
+        for(int i = 0; i < 64; i++) {
+            futures.add(executor.submit(() -> dyno.getByte(key)));
+        }
+        for(Future<byte[]> future : futures) {
+            byte[] result = future.get();
+            assertTrue(Arrays.equals(value, result));
+            // Each caller owns its bytes, even when the read was shared
+            result[0]++;
+        }
+        executor.shutdown();
+        assertTrue(dyno.delete(key));
+    }
+
+    @Test
+    public void testGetAfterPutDuringReads() throws Exception {
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        assertTrue(dyno.put(key, "first", String.class));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> futures = new ArrayList<>();
+        for(int i = 0; i < 32; i++) {
+            futures.add(executor.submit(() -> dyno.get(key, String.class)));
+        }
+        assertTrue(dyno.put(key, "second", String.class));
+        assertEquals("second", dyno.get(key, String.class));
+        for(Future<String> future : futures) {
+            assertNotNull(future.get());
+        }
+        executor.shutdown();
+        assertTrue(dyno.delete(key));
+    }
+
+    @Test
+    public void testConcurrencyLimit() {
+        Dyno limitedDyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withConcurrencyLimit("", 4, 16)
+                .withConcurrencyLimit("testkey:", 2, 4)
+                .withConcurrencyLimitQueue(1024, 30, TimeUnit.SECONDS)
+                .build();
+        DataFactory df = new DataFactory();
+        List<Entity> entities = new ArrayList<>();
+        for(int i = 0; i < 50; i++) {
+            entities.add(EntityBuilder.create(limitedDyno)
+                    .with("testkey", df.getRandomText(20))
+                    .build(df.getRandomText(100), String.class));
+        }
+        for(Result<Void> result : limitedDyno.putAll(entities)) {
+            assertTrue(result.isOk());
+        }
+        List<Key> keys = new ArrayList<>();
+        for(Entity entity : entities) {
+            keys.add(entity.getKey());
+        }
+        for(Result<Void> result : limitedDyno.deleteAll(keys)) {
+            assertTrue(result.isOk());
+        }
+        Map<String, Integer> limits = limitedDyno.getConcurrencyLimits();
+        assertEquals(2, limits.size());
+        assertTrue(limits.get("testkey:") >= 1 && limits.get("testkey:") <= 4);
+        assertTrue(limits.get("") >= 1 && limits.get("") <= 16);
+        assertEquals(0, limitedDyno.getRequestStats().getRejectedCount());
+        assertTrue(dyno.getConcurrencyLimits().isEmpty());
+    }
+
+    @Test
+    public void testRetryAndHedgedReads() {
+        Dyno hedgedDyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withRetryPolicy(3, 10, 200, TimeUnit.MILLISECONDS)
+                .withHedgedReads(0.95)
+                .build();
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        byte[] value = df.getRandomText(100).getBytes();
+        assertTrue(hedgedDyno.put(key, value, false));
+        for(int i = 0; i < 100; i++) {
+            assertTrue(Arrays.equals(value, hedgedDyno.getByte(key)));
+        }
+        RequestStats stats = hedgedDyno.getRequestStats();
+        assertTrue(stats.getHedgeDelayNanos() > 0);
+        assertTrue(stats.getHedgeWinCount() <= stats.getHedgeCount());
+        assertTrue(hedgedDyno.delete(key));
+        assertNull(hedgedDyno.getByte(key));
+    }
+
+    @Test
+    public void testHashKeys() {
+        Dyno hashedDyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withConfiguration(true, false)
+                .build();
+        DataFactory df = new DataFactory();
+        String prefix = df.getRandomText(10) + ":";
+        List<String> keys = new ArrayList<>();
+        for(int i = 0; i < 40; i++) {
+            String key = prefix + String.format("%03d", i);
+            assertTrue(hashedDyno.put(key, df.getRandomText(10).getBytes(), false));
+            keys.add(key);
+        }
+        assertTrue(hashedDyno.isExists(keys.get(0)));
+        assertNotNull(hashedDyno.getByte(keys.get(0)));
+        List<Key> listed = hashedDyno.listKeys(prefix, 10);
+        assertEquals(keys.size(), listed.size());
+        for(int i = 0; i < keys.size(); i++) {
+            assertEquals(keys.get(i), listed.get(i).stringKey());
+        }
+        assertEquals(keys.size(), hashedDyno.deleteByPrefix(prefix));
+        assertTrue(hashedDyno.listKeys(prefix, 10).isEmpty());
+    }
+
+    @Test
+    public void testScanKeys() {
+        DataFactory df = new DataFactory();
+        String prefix = df.getRandomText(10) + ":";
+        List<String> keys = new ArrayList<>();
+        for(int group = 0; group < 5; group++) {
+            for(int i = 0; i < 30; i++) {
+                String key = prefix + group + ":" + String.format("%03d", i);
+                assertTrue(dyno.put(key, df.getRandomText(10).getBytes(), false));
+                keys.add(key);
+            }
+        }
+        try(Stream<Key> scan = dyno.scanKeys(prefix, 20)) {
+            assertEquals(keys, scan.map(Key::stringKey).collect(Collectors.toList()));
+        }
+        try(Stream<Key> scan = dyno.scanKeys(prefix, 20)) {
+            assertEquals(keys.subList(0, 25), scan.limit(25).map(Key::stringKey).collect(Collectors.toList()));
+        }
+        try(Stream<Key> scan = dyno.scanKeys(prefix, 3, true)) {
+            assertEquals(keys, scan.map(Key::stringKey).collect(Collectors.toList()));
+        }
+        try(Stream<Key> scan = dyno.scanKeys(prefix, 3, false)) {
+            List<String> unordered = scan.map(Key::stringKey).sorted().collect(Collectors.toList());
+            assertEquals(keys, unordered);
+        }
+        assertEquals(keys.size(), dyno.listKeys(prefix, 20).size());
+        assertEquals(keys.size(), dyno.deleteByPrefix(prefix));
+    }
+
+    @Test
+    public void testScanRange() {
+        DataFactory df = new DataFactory();
+        String tenant = df.getRandomText(10);
+        List<String> keys = new ArrayList<>();
+        for(int day = 1; day <= 20; day++) {
+            String key = KeyBuilder.create(dyno)
+                    .with("events", tenant)
+                    .with(String.format("202001%02d120000", day))
+                    .build()
+                    .stringKey();
+            assertTrue(dyno.putString(key, df.getRandomText(20)));
+            keys.add(key);
+        }
+        String start = keys.get(4);
+        String end = keys.get(15);
+        try(Stream<Entity> scan = dyno.scan(start, end)) {
+            assertEquals(keys.subList(4, 15), scan.map(Entity::getKeyString).collect(Collectors.toList()));
+        }
+        try(Stream<Entity<String>> scan = dyno.scan(start, end, String.class, 4)) {
+            List<Entity<String>> entities = scan.collect(Collectors.toList());
+            assertEquals(11, entities.size());
+            for(Entity<String> entity : entities) {
+                assertEquals(dyno.getString(entity.getKeyString()), entity.getValue());
+            }
+        }
+        for(String key : keys) {
+            assertTrue(dyno.delete(key));
+        }
+    }
+
+    @Test
+    public void testScanEntities() {
+        DataFactory df = new DataFactory();
+        String prefix = df.getRandomText(10) + ":";
+        List<String> keys = new ArrayList<>();
+        for(int i = 0; i < 50; i++) {
+            String key = prefix + String.format("%03d", i);
+            assertTrue(dyno.putString(key, key));
+            keys.add(key);
+        }
+        try(Stream<Entity<String>> scan = dyno.scanEntities(prefix, String.class, 8)) {
+            List<Entity<String>> entities = scan.collect(Collectors.toList());
+            assertEquals(keys.size(), entities.size());
+            for(int i = 0; i < keys.size(); i++) {
+                assertEquals(keys.get(i), entities.get(i).getKeyString());
+                assertEquals(keys.get(i), entities.get(i).getValue());
+            }
+        }
+        try(Stream<Entity<String>> scan = dyno.scanEntities(prefix, String.class)) {
+            assertEquals(10, scan.limit(10).count());
+        }
+        assertEquals(keys.size(), dyno.deleteByPrefix(prefix));
+    }
+
+    @Test
+    public void testDiskCacheGetFile() throws IOException {
+        File cacheDirectory = Files.createTempDir();
+        Dyno cachedDyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withDiskCache(cacheDirectory, 1024 * 1024)
+                .build();
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        byte[] content = df.getRandomText(10240).getBytes(Charset.defaultCharset());
+        assertTrue(cachedDyno.put(key, content, false));
+        for(int i = 0; i < 2; i++) {
+            File resultFile = File.createTempFile(df.getRandomWord(20), ".txt");
+            cachedDyno.getFile(key, resultFile);
+            assertEquals(content.length, Files.asByteSource(resultFile).read().length);
+            assertEquals(i, cachedDyno.getCacheStats().getDiskHitCount());
+        }
+        assertTrue(cachedDyno.delete(key));
+    }
 }
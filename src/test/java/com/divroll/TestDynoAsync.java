@@ -0,0 +1,121 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll;
+
+import com.divroll.dyno.*;
+import junit.framework.TestCase;
+import org.fluttercode.datafactory.impl.DataFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+@RunWith(JUnit4.class)
+public class TestDynoAsync extends TestCase {
+
+    DynoAsync dynoAsync;
+
+    @Before
+    public void setup() {
+        dynoAsync = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withKeySpace(DynoClientBuilder.DEFAULT_KEY_SPACE)
+                .withExecutor(8, 64)
+                .withMaxInFlight(32)
+                .buildAsync();
+    }
+
+    @Test
+    public void testPutGetDelete() throws Exception {
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        String value = df.getRandomText(1024);
+        assertTrue(dynoAsync.put(key, value, String.class).get());
+        assertTrue(dynoAsync.isExists(key).get());
+        assertEquals(value, dynoAsync.get(key, String.class).get());
+        assertTrue(dynoAsync.delete(key).get());
+        assertFalse(dynoAsync.isExists(key).get());
+    }
+
+    @Test
+    public void testConcurrentEntities() throws Exception {
+        DataFactory df = new DataFactory();
+        List<CompletableFuture<Key>> futures = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            Entity entity = EntityBuilder.create(dynoAsync.getDyno())
+                    .with("testkey", df.getRandomText(20))
+                    .build(df.getRandomText(100), String.class);
+            futures.add(dynoAsync.put(entity));
+        }
+        for(CompletableFuture<Key> future : futures) {
+            Key key = future.get();
+            assertNotNull(key);
+            Entity entity = dynoAsync.getEntity(key, String.class).get();
+            assertNotNull(entity.getValue());
+            assertTrue(dynoAsync.delete(key.stringKey()).get());
+        }
+    }
+
+    @Test
+    public void testSubmitBeyondInFlightLimit() throws Exception {
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        assertTrue(dynoAsync.put(key, df.getRandomText(100), String.class).get());
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for(int i = 0; i < 200; i++) {
+            futures.add(dynoAsync.isExists(key));
+        }
+        // Operations beyond the in-flight limit are queued instead of blocking the caller
+        for(CompletableFuture<Boolean> future : futures) {
+            assertTrue(future.get());
+        }
+        assertEquals(0, dynoAsync.queuedOperations());
+        assertTrue(dynoAsync.delete(key).get());
+    }
+
+    @Test
+    public void testSubmitBeyondQueueLimit() throws Exception {
+        DynoAsync limited = new DynoAsync(dynoAsync.getDyno(), 2, 4);
+        DataFactory df = new DataFactory();
+        String key = df.getRandomText(20);
+        assertTrue(limited.put(key, df.getRandomText(100), String.class).get());
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            futures.add(limited.isExists(key));
+        }
+        int rejected = 0;
+        for(CompletableFuture<Boolean> future : futures) {
+            try {
+                assertTrue(future.get());
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ThrottledException);
+                rejected++;
+            }
+        }
+        assertTrue(rejected > 0);
+        assertEquals(0, limited.queuedOperations());
+        assertTrue(limited.delete(key).get());
+    }
+
+}
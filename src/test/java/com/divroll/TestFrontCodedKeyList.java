@@ -0,0 +1,91 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll;
+
+import com.divroll.dyno.*;
+import junit.framework.TestCase;
+import org.fluttercode.datafactory.impl.DataFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+@RunWith(JUnit4.class)
+public class TestFrontCodedKeyList extends TestCase {
+
+    Dyno dyno;
+
+    @Before
+    public void setup() {
+        dyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .build();
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        DataFactory df = new DataFactory();
+        TreeSet<String> keys = new TreeSet<>();
+        for(int i = 0; i < 1000; i++) {
+            keys.add("user_id:" + df.getNumberBetween(0, 100) + ":" + df.getRandomWord());
+        }
+        FrontCodedKeyList.Builder builder = FrontCodedKeyList.builder(dyno);
+        for(String key : keys) {
+            builder.add(key);
+        }
+        FrontCodedKeyList keyList = builder.build();
+        assertEquals(keys.size(), keyList.size());
+        List<String> decoded = new ArrayList<>();
+        for(Key key : keyList) {
+            decoded.add(key.stringKey());
+        }
+        assertEquals(new ArrayList<>(keys), decoded);
+        for(int i = 0; i < decoded.size(); i++) {
+            assertEquals(decoded.get(i), keyList.get(i).stringKey());
+            assertTrue(keyList.containsKey(decoded.get(i)));
+        }
+        assertFalse(keyList.containsKey("user_id:"));
+        assertTrue(keyList.encodedSize() < decoded.size() * decoded.get(0).length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsortedKeys() {
+        FrontCodedKeyList.builder(dyno)
+                .add("user_id:2")
+                .add("user_id:1");
+    }
+
+    @Test
+    public void testListKeysCompact() {
+        DataFactory df = new DataFactory();
+        String prefix = df.getRandomText(10) + ":";
+        for(int i = 0; i < 30; i++) {
+            assertTrue(dyno.putString(prefix + String.format("%02d", i), df.getRandomText(10)));
+        }
+        FrontCodedKeyList keyList = dyno.listKeysCompact(prefix);
+        assertEquals(30, keyList.size());
+        assertEquals(prefix + "29", keyList.get(29).stringKey());
+        assertEquals(30, dyno.deleteByPrefix(prefix));
+    }
+
+}
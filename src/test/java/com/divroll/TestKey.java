@@ -57,6 +57,18 @@ public class TestKey extends TestCase {
                 .build(null);
     }
 
+    @Test
+    public void testKeyFromBuilder() {
+        DataFactory df = new DataFactory();
+        String stringKey = df.getRandomText(20);
+        KeyBuilder builder = KeyBuilder.create(dyno);
+        Key key = new Key(builder, stringKey);
+        assertFalse(key.isExist());
+        assertTrue(dyno.put(stringKey, df.getRandomText(20), String.class));
+        assertTrue(key.isExist());
+        assertTrue(key.delete());
+    }
+
     @Test
     public void testDeleteEntity() {
         DataFactory df = new DataFactory();
@@ -120,4 +132,20 @@ public class TestKey extends TestCase {
         assertEquals(stringValue, entity.getValue(String.class));
     }
 
+    @Test
+    public void testGetEntityStreaming() {
+        DataFactory df = new DataFactory();
+        String stringKeyValue = df.getRandomText(20);
+        String stringValue = df.getRandomText(2048);
+        Key key = EntityBuilder.create(dyno)
+                .with("testkey", stringKeyValue)
+                .build(stringValue, String.class)
+                .put();
+        Entity entity = key.getEntity(String.class, true);
+        assertNotNull(entity);
+        assertEquals(stringValue, entity.getValue(String.class));
+        assertTrue(entity.getSize() > stringValue.length());
+        assertTrue(key.delete());
+    }
+
 }
@@ -0,0 +1,75 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll;
+
+import com.divroll.dyno.*;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TestKeyTemplate extends TestCase {
+
+    Dyno dyno;
+
+    @Before
+    public void setup() {
+        dyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .build();
+    }
+
+    @Test
+    public void testFormatAndParse() {
+        KeyTemplate template = KeyTemplate.compile(dyno, "user_id:{}:password");
+        assertEquals(1, template.getVariableCount());
+        assertEquals("user_id:", template.getPrefix());
+        Key key = template.key(42);
+        assertEquals("user_id:42:password", key.stringKey());
+        assertEquals(new KeyBuilder(dyno).with("user_id", "42").with("password").build().stringKey(), key.stringKey());
+        assertEquals("42", template.parse(key)[0]);
+        assertNull(template.parse("user_id:42:username"));
+        assertNull(template.parse("user_id::password"));
+        assertFalse(template.matches("user_id:42:extra:password"));
+
+        KeyTemplate pair = KeyTemplate.compile(dyno, "{}:friend:{}");
+        assertEquals("alice:friend:bob", pair.format("alice", "bob"));
+        String[] values = pair.parse("alice:friend:bob");
+        assertEquals("alice", values[0]);
+        assertEquals("bob", values[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdjacentPlaceholders() {
+        KeyTemplate.compile(dyno, "user_id:{}{}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeySpaceInValue() {
+        KeyTemplate.compile(dyno, "user_id:{}").format("a:b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongValueCount() {
+        KeyTemplate.compile(dyno, "user_id:{}").format(1, 2);
+    }
+
+}
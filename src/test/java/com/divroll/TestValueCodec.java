@@ -0,0 +1,117 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll;
+
+import com.divroll.dyno.*;
+import com.google.common.io.ByteStreams;
+import junit.framework.TestCase;
+import org.fluttercode.datafactory.impl.DataFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class TestValueCodec extends TestCase {
+
+    Dyno dyno;
+    PointCodec codec;
+
+    @Before
+    public void setup() {
+        codec = new PointCodec();
+        dyno = DynoClientBuilder
+                .simple()
+                .withEndpointConfig("http://127.0.0.1:9000", "us-east-1")
+                .withCredentials(Credentials.getAccessKey(), Credentials.getSecretKey())
+                .withBucket("test-database")
+                .withCodec(Point.class, codec)
+                .build();
+    }
+
+    @Test
+    public void testCustomCodec() {
+        String key = new DataFactory().getRandomText(20);
+        assertTrue(dyno.put(key, new Point(3, 4), Point.class));
+        assertEquals(1, codec.encoded.get());
+        assertTrue(Arrays.equals("3,4".getBytes(StandardCharsets.UTF_8), dyno.getByte(key)));
+        assertEquals(new Point(3, 4), dyno.get(key, Point.class));
+        assertEquals(1, codec.bufferDecoded.get());
+        assertEquals(new Point(3, 4), dyno.get(key, Point.class, true));
+        assertEquals(1, codec.streamDecoded.get());
+        assertTrue(dyno.delete(key));
+    }
+
+    static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Point && ((Point) o).x == x && ((Point) o).y == y;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * x + y;
+        }
+    }
+
+    static final class PointCodec implements ValueCodec<Point> {
+        final AtomicInteger encoded = new AtomicInteger();
+        final AtomicInteger bufferDecoded = new AtomicInteger();
+        final AtomicInteger streamDecoded = new AtomicInteger();
+
+        @Override
+        public void encode(Point value, OutputStream outputStream) throws IOException {
+            encoded.incrementAndGet();
+            outputStream.write((value.x + "," + value.y).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Point decode(ByteBuffer buffer) {
+            bufferDecoded.incrementAndGet();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return parse(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Point decode(InputStream inputStream) throws IOException {
+            streamDecoded.incrementAndGet();
+            return parse(new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8));
+        }
+
+        private static Point parse(String value) {
+            String[] parts = value.split(",");
+            return new Point(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Divroll, Platform for Hosting Static Sites
+ * Copyright 2020, Divroll, and individual contributors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.divroll.dyno;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+@RunWith(JUnit4.class)
+public class TestBufferPool extends TestCase {
+
+    @Test
+    public void testReuseAfterRelease() {
+        BufferPool pool = new BufferPool(64 * 1024, 4);
+        ByteBuffer buffer = pool.acquire(1000);
+        assertEquals(1024, buffer.capacity());
+        buffer.put(new byte[700]);
+        pool.release(buffer);
+        ByteBuffer reused = pool.acquire(600);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+        assertNotSame(reused, pool.acquire(600));
+    }
+
+    @Test
+    public void testBufferOverMaximumNotPooled() {
+        BufferPool pool = new BufferPool(4096, 4);
+        ByteBuffer buffer = pool.acquire(10000);
+        assertEquals(10000, buffer.capacity());
+        pool.release(buffer);
+        assertNotSame(buffer, pool.acquire(10000));
+    }
+
+    @Test
+    public void testMaxPooledBuffers() {
+        BufferPool pool = new BufferPool(4096, 1);
+        ByteBuffer first = pool.acquire(1024);
+        ByteBuffer second = pool.acquire(1024);
+        pool.release(first);
+        pool.release(second);
+        assertSame(first, pool.acquire(1024));
+        assertNotSame(second, pool.acquire(1024));
+    }
+
+    @Test
+    public void testOutputStreamReleasesBuffers() {
+        BufferPool pool = new BufferPool(64 * 1024, 4);
+        byte[] bytes = new byte[3000];
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        BufferOutputStream outputStream = new BufferOutputStream(pool, 1024);
+        byte[] initial = outputStream.array();
+        outputStream.write(bytes, 0, bytes.length);
+        byte[] grown = outputStream.array();
+        assertEquals(4096, grown.length);
+        assertEquals(bytes.length, outputStream.size());
+        ByteBuffer written = outputStream.toByteBuffer();
+        byte[] copy = new byte[written.remaining()];
+        written.get(copy);
+        assertTrue(Arrays.equals(bytes, copy));
+        outputStream.close();
+        assertSame(initial, pool.acquire(1024).array());
+        assertSame(grown, pool.acquire(4096).array());
+    }
+
+}